@@ -0,0 +1,43 @@
+import java.util.Arrays;
+
+/**
+ * A VisitBoard kept in a single int array on the Java heap.
+ *
+ * Move numbers are stored offset by one so that the zeroed array handed out
+ * by the JVM already reads as an empty board; no initialization pass over the
+ * squares is needed.
+ *
+ * @author Darren M.
+ */
+public class ArrayVisitBoard implements VisitBoard {
+    private final int[] _visit;     // Move number + 1 of each square
+
+    /**
+     * An empty board with the given number of squares.
+     *
+     * @param squareCount   The number of squares on the board
+     */
+    public ArrayVisitBoard( int squareCount ) {
+        _visit = new int[squareCount];
+    }
+
+    @Override
+    public int getSquareCount() {
+        return _visit.length;
+    }
+
+    @Override
+    public int get( int square ) {
+        return _visit[square] - 1;
+    }
+
+    @Override
+    public void set( int square, int move ) {
+        _visit[square] = move + 1;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill( _visit, 0 );
+    }
+}
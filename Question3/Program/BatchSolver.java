@@ -0,0 +1,268 @@
+import java.io.PrintStream;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs the Solver from every starting square of a board.
+ *
+ * The starting squares are split between the threads of a ForkJoinPool, which
+ * steal work from one another as they finish. Each range of starts borrows an
+ * idle Solver and resets it between starting squares, so the board's storage
+ * is allocated about once per thread rather than once per start; the idle
+ * Solvers are dropped when the batch ends, so none outlive it. The result
+ * of every start (whether the tour completed, how many moves were made, and
+ * how long it took) is kept for the summary table. Boards of at most 64
+ * squares are solved by a BitboardSolver instead, which is much faster on the
+ * millions of small tours a batch can run to.
+ *
+ * @author Darren M.
+ */
+public class BatchSolver {
+    private static final int STARTS_PER_TASK = 16;  // Starts solved per task
+    private static final int MAX_GRID_SIDE = 100;   // Largest grid to print
+
+    private final Board _board;         // Geometry of the chessboard
+    private final TieBreak _tieBreak;   // How to choose between equal moves
+    private final long budget;          // Moves to spend on each start
+
+    private final boolean[] _complete;  // Whether each start completed a tour
+    private final int[] _moves;         // Moves made from each start
+    private final long[] _nanos;        // Time spent on each start
+    private long elapsedNanos;          // Wall-clock time of the whole batch
+    private int threads;                // Threads the batch was solved on
+
+    // Solvers not in use by any range of starts, about one per thread
+    private final ConcurrentLinkedQueue<Solver> _idleSolvers =
+            new ConcurrentLinkedQueue<Solver>();
+    private final ConcurrentLinkedQueue<BitboardSolver> _idleBitboardSolvers =
+            new ConcurrentLinkedQueue<BitboardSolver>();
+
+    /**
+     * BatchSolver solves the given board from each of its squares.
+     *
+     * @param board     The board to tour
+     * @param tieBreak  The tie-breaking rule each Solver uses
+     * @param budget    The moves, made or taken back, to spend on each start
+     */
+    public BatchSolver( Board board, TieBreak tieBreak, long budget ) {
+        _board = board;
+        _tieBreak = tieBreak;
+        this.budget = budget;
+
+        _complete = new boolean[board.getSquareCount()];
+        _moves = new int[board.getSquareCount()];
+        _nanos = new long[board.getSquareCount()];
+    }
+
+    /**
+     * Solve the board from every starting square on the common ForkJoinPool.
+     */
+    public void solveAll() {
+        solveAll( ForkJoinPool.commonPool() );
+    }
+
+    /**
+     * Solve the board from every starting square on the given ForkJoinPool.
+     *
+     * @param pool      The pool to solve the starting squares on
+     */
+    public void solveAll( ForkJoinPool pool ) {
+        long start = System.nanoTime();
+        try {
+            pool.invoke( new SolveTask(0, _board.getSquareCount()) );
+        }
+        finally {
+            _idleSolvers.clear();
+            _idleBitboardSolvers.clear();
+        }
+        elapsedNanos = System.nanoTime() - start;
+        threads = pool.getParallelism();
+    }
+
+    /**
+     * Check if the tour from a starting square completed
+     *
+     * @param square    The starting square's index
+     * @return      true, if every square was visited; false otherwise
+     */
+    public boolean isComplete( int square ) {
+        return _complete[square];
+    }
+
+    /**
+     * Get the number of moves made from a starting square
+     *
+     * @param square    The starting square's index
+     * @return      The number of moves in the final tour
+     */
+    public int getMoveCount( int square ) {
+        return _moves[square];
+    }
+
+    /**
+     * Get the time spent solving from a starting square
+     *
+     * @param square    The starting square's index
+     * @return      The time spent, in nanoseconds
+     */
+    public long getNanos( int square ) {
+        return _nanos[square];
+    }
+
+    /**
+     * Get the number of starting squares which completed a tour
+     *
+     * @return      The number of complete tours
+     */
+    public int getCompleteCount() {
+        int result = 0;
+
+        for( boolean complete : _complete ) {
+            if( complete )
+                result++;
+        }
+
+        return result;
+    }
+
+    /**
+     * Print a summary table of the batch.
+     *
+     * Besides the totals, boards no larger than MAX_GRID_SIDE on either side
+     * get a grid, laid out like Play's board, marking the starting squares
+     * that completed a tour with "#" and the ones that didn't with ".".
+     *
+     * @param out       The stream to print to
+     */
+    public void printSummary( PrintStream out ) {
+        int starts = _board.getSquareCount();
+        int complete = getCompleteCount();
+        long minimum = Long.MAX_VALUE;
+        long maximum = 0;
+        long total = 0;
+
+        for( long nanos : _nanos ) {
+            minimum = Math.min( minimum, nanos );
+            maximum = Math.max( maximum, nanos );
+            total += nanos;
+        }
+
+        out.println("Board:              " + _board + ", tie-break " +
+                    _tieBreak.name().toLowerCase() + ", budget " + budget );
+        out.println("Starting squares:   " + starts );
+        out.printf("Complete tours:     %d (%.1f%%)%n", complete,
+                    100.0 * complete / starts );
+        out.printf("Time per start:     min %.3fms, mean %.3fms, " +
+                    "max %.3fms%n", minimum / 1e6, total / 1e6 / starts,
+                    maximum / 1e6 );
+        out.printf("Wall-clock time:    %.3fms on %d thread%s%n",
+                    elapsedNanos / 1e6, threads, (threads == 1) ? "" : "s" );
+
+        if( (_board.getWidth() > MAX_GRID_SIDE) ||
+                (_board.getHeight() > MAX_GRID_SIDE) )
+            return;
+
+        out.println();
+        for( int i = 0; i < _board.getWidth(); i++ ) {
+            StringBuilder line = new StringBuilder();
+
+            for( int j = 0; j < _board.getHeight(); j++ )
+                line.append( _complete[_board.getSquare(i, j)] ? '#' : '.' );
+
+            out.println( line );
+        }
+    }
+
+    /**
+     * Solves a range of starting squares, splitting large ranges between the
+     * pool's threads.
+     */
+    private class SolveTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int first;    // First starting square to solve
+        private final int end;      // Square after the last one to solve
+
+        SolveTask( int first, int end ) {
+            this.first = first;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if( end - first > STARTS_PER_TASK ) {
+                int middle = (first + end) >>> 1;
+                invokeAll( new SolveTask(first, middle),
+                           new SolveTask(middle, end) );
+                return;
+            }
+
+            if( BitboardSolver.fits(_board) )
+                solveBitboard();
+            else
+                solve();
+        }
+
+        /**
+         * Solve from each starting square of the range with an idle Solver.
+         */
+        private void solve() {
+            Solver solver = _idleSolvers.poll();
+
+            for( int square = first; square < end; square++ ) {
+                long start = System.nanoTime();
+
+                if( solver == null ) {
+                    solver = new Solver( _board, _board.getX(square),
+                                         _board.getY(square) );
+                    solver.setTieBreak( _tieBreak );
+                }
+                else
+                    solver.reset( _board.getX(square), _board.getY(square) );
+
+                // Random tie-breaks start afresh from each square, seeded by
+                // it as a new Solver would be, whichever thread gets it
+                if( _tieBreak == TieBreak.RANDOM )
+                    solver.setSeed( square );
+
+                _complete[square] = solver.solve( budget );
+                _moves[square] = solver.getMoveCount();
+                _nanos[square] = System.nanoTime() - start;
+            }
+
+            _idleSolvers.offer( solver );
+        }
+
+        /**
+         * Solve from each starting square of the range with an idle
+         * BitboardSolver.
+         */
+        private void solveBitboard() {
+            BitboardSolver solver = _idleBitboardSolvers.poll();
+
+            for( int square = first; square < end; square++ ) {
+                long start = System.nanoTime();
+
+                if( solver == null ) {
+                    solver = new BitboardSolver( _board, _board.getX(square),
+                                                 _board.getY(square) );
+                    solver.setTieBreak( _tieBreak );
+                }
+                else
+                    solver.reset( _board.getX(square), _board.getY(square) );
+
+                // Random tie-breaks start afresh from each square, seeded by
+                // it as a new Solver would be, whichever thread gets it
+                if( _tieBreak == TieBreak.RANDOM )
+                    solver.setSeed( square );
+
+                _complete[square] = solver.solve( budget );
+                _moves[square] = solver.getMoveCount();
+                _nanos[square] = System.nanoTime() - start;
+            }
+
+            _idleBitboardSolvers.offer( solver );
+        }
+    }
+}
@@ -0,0 +1,396 @@
+import java.util.Random;
+
+/**
+ * A Solver for boards of at most 64 squares, which keeps the whole board in
+ * the bits of a long.
+ *
+ * The visited squares form a single bitboard, and every square's destinations
+ * come precomputed from the MoveTable as another. The unvisited destinations
+ * of a square are then one AND, and the number of onward moves from each of
+ * them (the weight Warnsdorff's rule minimizes) is one Long.bitCount, so a
+ * step of the tour needs no per-square counters to keep up to date and no
+ * lookups in a visit array.
+ *
+ * Candidate moves are weighed in the MoveTable's move order, each tested
+ * against the bitboard, so ties are settled exactly as by the Solver and both
+ * find the same tour from the same square.
+ * Backtracking works as in Solver.solve(), on fixed stacks with one entry per
+ * move, so solving allocates nothing.
+ *
+ * @author Darren M.
+ */
+public class BitboardSolver {
+    private final Board _board;         // Geometry of the chessboard
+    private final MoveTable _table;     // Moves of each square, in order
+    private final long[] _attacks;      // Destinations of each square
+    private final long[] _distances;    // Distance of each square from the
+                                        // center, for TieBreak.CENTER
+    private final int[] _path;          // Square reached on each move
+    private final long[] _tried;        // Destinations tried after each move
+    private TieBreak _tieBreak;         // How to choose between equal moves
+    private TieBreak _requestedTieBreak;    // The rule set by setTieBreak(),
+                                            // before solve() started over
+    private Random _random;             // Moves for TieBreak.RANDOM
+    private long visited;               // Bitboard of the visited squares
+    private int numberOfMoves;          // Amount of moves committed
+
+    /**
+     * BitboardSolver drives the Knight-piece around a small board.
+     *
+     * @param board         The board to tour, of at most 64 squares
+     * @param startingX     X-coordinate of the Knight-piece's starting position
+     * @param startingY     Y-coordinate of the Knight-piece's starting position
+     */
+    public BitboardSolver( Board board, int startingX, int startingY ) {
+        if(! fits(board) )
+            throw new IllegalArgumentException("The " + board + " board has " +
+                                                "more than " +
+                                                MoveTable.MAX_BITBOARD_SQUARES +
+                                                " squares");
+
+        MoveTable table = board.getMoveTable();
+
+        _board = board;
+        _table = table;
+        _attacks = table.copyAttacks();
+        _distances = new long[board.getSquareCount()];
+        _path = new int[board.getSquareCount()];
+        _tried = new long[board.getSquareCount()];
+        _tieBreak = TieBreak.FIRST;
+        _requestedTieBreak = TieBreak.FIRST;
+
+        for( int square = 0; square < _distances.length; square++ ) {
+            long xDistance = 2L * table.getX(square) - (board.getWidth() - 1);
+            long yDistance = 2L * table.getY(square) - (board.getHeight() - 1);
+
+            _distances[square] = xDistance * xDistance + yDistance * yDistance;
+        }
+
+        reset( startingX, startingY );
+    }
+
+    /**
+     * Check if a board is small enough for a BitboardSolver
+     *
+     * @param board     The board to check
+     * @return      true, if every square fits in the bits of a long
+     */
+    public static boolean fits( Board board ) {
+        return board.getSquareCount() <= MoveTable.MAX_BITBOARD_SQUARES;
+    }
+
+    /**
+     * Choose the rule used to break ties between moves of equal weight.
+     *
+     * @param tieBreak  The tie-breaking rule; TieBreak.FIRST by default
+     */
+    public void setTieBreak( TieBreak tieBreak ) {
+        _tieBreak = tieBreak;
+        _requestedTieBreak = tieBreak;
+    }
+
+    /**
+     * Seed the moves taken by TieBreak.RANDOM.
+     *
+     * @param seed      The seed; the starting square by default
+     */
+    public void setSeed( long seed ) {
+        _random = new Random( seed );
+    }
+
+    /**
+     * Start over from a new starting position; the tie-breaking rule
+     * set is kept.
+     *
+     * @param startingX     X-coordinate of the Knight-piece's starting position
+     * @param startingY     Y-coordinate of the Knight-piece's starting position
+     */
+    public void reset( int startingX, int startingY ) {
+        if(! _board.contains(startingX, startingY) )
+            throw new IllegalArgumentException("Starting position (" +
+                                                startingX + "," + startingY +
+                                                ") is not on the " + _board +
+                                                " board");
+
+        int start = _board.getSquare( startingX, startingY );
+
+        _path[0] = start;
+        _tried[0] = 0;
+        visited = 1L << start;
+        numberOfMoves = 0;
+        _tieBreak = _requestedTieBreak;
+    }
+
+    /**
+     * Get the geometry of the board being toured
+     *
+     * @return      The Solver's board
+     */
+    public Board getGeometry() {
+        return _board;
+    }
+
+    /**
+     * Get the number of moves committed so far
+     *
+     * @return      The number of moves the Knight-piece has made
+     */
+    public int getMoveCount() {
+        return numberOfMoves;
+    }
+
+    /**
+     * Get the square the Knight-piece reached on a move
+     *
+     * @param move      The move number, up to getMoveCount()
+     * @return      The square's index
+     */
+    public int getSquare( int move ) {
+        return _path[move];
+    }
+
+    /**
+     * Get the squares visited so far
+     *
+     * @return      Bitboard of the visited squares
+     */
+    public long getVisited() {
+        return visited;
+    }
+
+    /**
+     * Record the move number of every square visited so far.
+     *
+     * @param visits    Storage with one entry per square of the board
+     */
+    public void copyTo( VisitBoard visits ) {
+        visits.clear();
+
+        for( int move = 0; move <= numberOfMoves; move++ )
+            visits.set( _path[move], move );
+    }
+
+    /**
+     * Check if the Knight-piece has visited every square of the board
+     *
+     * @return      true, if the tour is complete; false otherwise
+     */
+    public boolean isComplete() {
+        return numberOfMoves == _board.getSquareCount() - 1;
+    }
+
+    /**
+     * Obtain the smallest number of onward moves among the unvisited squares
+     * reachable from a given square.
+     *
+     * @param square    The square the Knight moves from
+     * @param free      Bitboard of the unvisited squares
+     * @return      The least number of onward moves, or Integer.MAX_VALUE if
+     *              no unvisited square can be reached
+     */
+    private int getLeastOnwardMoves( int square, long free ) {
+        int result = Integer.MAX_VALUE;
+
+        for( long moves = _attacks[square] & free; moves != 0;
+                moves &= moves - 1 ) {
+            result = Math.min( result, Long.bitCount(
+                    _attacks[Long.numberOfTrailingZeros(moves)] & free) );
+        }
+
+        return result;
+    }
+
+    /**
+     * Check if a square should be preferred over another of equal weight by
+     * the onward moves of its lightest onward move, as TieBreak.LOOKAHEAD
+     * does.
+     *
+     * @param square    The square being considered
+     * @param best      The preferred square so far
+     * @param free      Bitboard of the unvisited squares
+     * @return      true, if the considered square is preferable
+     */
+    private boolean breaksLookaheadTie( int square, int best, long free ) {
+        int onward = getLeastOnwardMoves( square, free );
+        int bestOnward = getLeastOnwardMoves( best, free );
+
+        if( onward != bestOnward )
+            return onward < bestOnward;
+
+        // Equal one move further ahead; settle it by the center rule
+        return _distances[square] > _distances[best];
+    }
+
+    /**
+     * Check if a square should be preferred over another of equal weight,
+     * according to the tie-breaking rule.
+     *
+     * @param square    The square being considered
+     * @param best      The preferred square so far
+     * @param free      Bitboard of the unvisited squares
+     * @param ties      The number of squares of equal weight so far,
+     *                  counting both of these
+     * @return      true, if the considered square is preferable
+     */
+    private boolean breaksTie( int square, int best, long free, int ties ) {
+        switch( _tieBreak ) {
+            case LOOKAHEAD:
+                return breaksLookaheadTie( square, best, free );
+            case CENTER:
+                return _distances[square] > _distances[best];
+            case RANDOM:
+                if( _random == null )
+                    _random = new Random( _path[0] );
+
+                // Keeps each of the squares so far with equal chance
+                return _random.nextInt( ties ) == 0;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Choose the move the Knight-piece should make from a square, as
+     * Solver does.
+     *
+     * @param current   The square the Knight-piece moves from
+     * @param excluded  Bitboard of destinations which must not be taken
+     * @return      The chosen destination, or -1 if no move is left
+     */
+    private int chooseMove( int current, long excluded ) {
+        long free = ~visited;
+        long candidates = free & ~excluded;
+        int smallestWeight = Integer.MAX_VALUE;
+        int destination = -1;
+        int ties = 0;
+
+        // Walk the moves in the Solver's order, rather than the bitboard's
+        for( int moves = _table.getMoveMask(current); moves != 0;
+                moves &= moves - 1 ) {
+            int square = current +
+                    _table.getDelta( Integer.numberOfTrailingZeros(moves) );
+            if( (candidates & (1L << square)) == 0 )
+                continue;
+
+            int weight = Long.bitCount( _attacks[square] & free );
+
+            if( weight < smallestWeight ) {
+                smallestWeight = weight;
+                destination = square;
+                ties = 1;
+            }
+            else if( weight == smallestWeight ) {
+                if( SolverMetrics.ENABLED )
+                    SolverMetrics.TIES.increment();
+
+                if( breaksTie(square, destination, free, ++ties) )
+                    destination = square;
+            }
+        }
+
+        if( SolverMetrics.ENABLED && (destination < 0) )
+            SolverMetrics.DEAD_ENDS.increment();
+
+        return destination;
+    }
+
+    /**
+     * Moves the Knight-piece to the next viable, unvisited space on the board.
+     *
+     * @return      The square index the Knight-piece moved to, or -1 if no
+     *              unvisited square can be reached
+     */
+    public int nextSquare() {
+        int destination = chooseMove( _path[numberOfMoves], 0 );
+
+        if( destination >= 0 )
+            advance( destination );
+
+        return destination;
+    }
+
+    /**
+     * Move the Knight-piece to a square.
+     *
+     * @param destination   The unvisited square to move to
+     */
+    private void advance( int destination ) {
+        numberOfMoves++;
+        _path[numberOfMoves] = destination;
+        _tried[numberOfMoves] = 0;
+        visited |= 1L << destination;
+
+        if( SolverMetrics.ENABLED )
+            SolverMetrics.MOVES_MADE.increment();
+    }
+
+    /**
+     * Take back the Knight-piece's last move, remembering it as tried.
+     */
+    private void retreat() {
+        long current = 1L << _path[numberOfMoves];
+
+        visited &= ~current;
+        numberOfMoves--;
+        _tried[numberOfMoves] |= current;
+
+        if( SolverMetrics.ENABLED )
+            SolverMetrics.RETREATS.increment();
+    }
+
+    /**
+     * Drive the Knight-piece until it has visited every square, backtracking
+     * out of dead-ends as Solver.solve() does, starting over with
+     * TieBreak.CENTER at the first dead-end of TieBreak.FIRST.
+     *
+     * @param budget    The maximum number of moves, made or taken back,
+     *                  to spend on the search
+     * @return      true, if the tour is complete; false if the budget ran out
+     *              or no tour exists from the starting position
+     */
+    public boolean solve( long budget ) {
+        if(! SolverMetrics.ENABLED )
+            return search( budget );
+
+        long start = System.nanoTime();
+        boolean complete = search( budget );
+
+        SolverMetrics.endPhase( SolverMetrics.Phase.SOLVE, start );
+        SolverMetrics.recordTour( _board, _path[0], complete,
+                                  System.nanoTime() - start );
+        return complete;
+    }
+
+    /**
+     * Run the search of solve().
+     *
+     * @param budget    The maximum number of moves, made or taken back,
+     *                  to spend on the search
+     * @return      true, if the tour is complete; false otherwise
+     */
+    private boolean search( long budget ) {
+        int lastMove = _board.getSquareCount() - 1;
+
+        while( (numberOfMoves < lastMove) && (budget-- > 0) ) {
+            int destination = chooseMove( _path[numberOfMoves],
+                                          _tried[numberOfMoves] );
+
+            if( destination >= 0 )
+                advance( destination );
+            // Every move from the starting position failed; no tour exists
+            else if( numberOfMoves == 0 )
+                return false;
+            // FIRST only gets the greedy run, as in Solver.solve()
+            else if( _tieBreak == TieBreak.FIRST ) {
+                numberOfMoves = 0;
+                visited = 1L << _path[0];
+                _tried[0] = 0;
+                _tieBreak = TieBreak.CENTER;
+            }
+            else
+                retreat();
+        }
+
+        return numberOfMoves == lastMove;
+    }
+}
@@ -0,0 +1,553 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Solves the Knight's tour on large boards by splitting them into blocks.
+ *
+ * The board is cut into a grid of blocks of roughly 8x8 squares, with an even
+ * number of block rows so that a cycle can pass through every block: along the
+ * top row, snaking back and forth through the remaining columns, and up the
+ * first column to where it started. Within each block the Knight-piece follows
+ * a path that enters from the previous block and leaves with a single move into
+ * the next one, so chaining the paths gives a closed tour of the whole board.
+ * Rotating the closed tour to begin at the starting position turns it into the
+ * usual tour, numbered just like Solver.getBoard().
+ *
+ * Blocks only come in a handful of sizes and their entry and exit squares
+ * repeat, so each distinct block path is solved once and then looked up. The
+ * paths are planned one block after another, which is only a matter of table
+ * lookups, and the board itself is then filled in parallel on a ForkJoinPool.
+ *
+ * Boards that can't be split this way (smaller than 10 squares on a side, or
+ * with an odd number of squares, which rules out a closed tour) are solved
+ * by the Solver instead, as are boards of other Leapers than the
+ * Knight-piece, for which the block sizes aren't tuned.
+ *
+ * @author Darren M.
+ */
+public class BlockSolver {
+    private static final int BLOCK_SIZE = 8;        // Preferred block side
+    private static final int MIN_BLOCK_SIZE = 5;    // Smallest block side
+    private static final int BLOCKS_PER_TASK = 256; // Blocks filled per task
+    private static final long BLOCK_BUDGET = 200000;// Moves to solve a block
+    private static final long SOLVER_BUDGET = 100;  // Moves per square when
+                                                    // falling back to Solver
+
+    // Directions from one block to the next along the cycle
+    private static final int RIGHT = 0;
+    private static final int DOWN = 1;
+    private static final int LEFT = 2;
+    private static final int UP = 3;
+
+    // Paths of blocks solved so far, keyed by block size and endpoints; the
+    // empty path marks blocks that have no solution
+    private static final ConcurrentMap<Long, int[]> PATHS =
+            new ConcurrentHashMap<Long, int[]>();
+    private static final int[] NO_PATH = new int[0];
+
+    private final Board _board;     // Geometry of the chessboard
+    private final VisitBoard _visit;// The board which tracks visits
+    private final int startingX;    // X-coordinate of the starting position
+    private final int startingY;    // Y-coordinate of the starting position
+
+    private int[] columnStarts;     // X-coordinate of each block column
+    private int[] rowStarts;        // Y-coordinate of each block row
+    private int[] blockColumns;     // Block column of each block on the cycle
+    private int[] blockRows;        // Block row of each block on the cycle
+    private int[][] blockPaths;     // Path through each block on the cycle
+    private int[] blockOffsets;     // Cycle position of each block's start
+    private int startOffset;        // Cycle position of the starting square
+
+    /**
+     * BlockSolver tours the board from the given starting position.
+     *
+     * @param board         The board to tour
+     * @param visits        Empty storage for the visits, with one entry per
+     *                      square of the board
+     * @param startingX     X-coordinate of the Knight-piece's starting position
+     * @param startingY     Y-coordinate of the Knight-piece's starting position
+     */
+    public BlockSolver( Board board, VisitBoard visits, int startingX,
+                        int startingY ) {
+        if(! board.contains(startingX, startingY) )
+            throw new IllegalArgumentException("Starting position (" +
+                                                startingX + "," + startingY +
+                                                ") is not on the " + board +
+                                                " board");
+        if( visits.getSquareCount() != board.getSquareCount() )
+            throw new IllegalArgumentException("Visit storage holds " +
+                                                visits.getSquareCount() +
+                                                " squares; the " + board +
+                                                " board needs " +
+                                                board.getSquareCount() );
+
+        _board = board;
+        _visit = visits;
+        this.startingX = startingX;
+        this.startingY = startingY;
+    }
+
+    /**
+     * BlockSolver tours the board from the given starting position, tracking
+     * the visits in an array on the Java heap.
+     *
+     * @param board         The board to tour
+     * @param startingX     X-coordinate of the Knight-piece's starting position
+     * @param startingY     Y-coordinate of the Knight-piece's starting position
+     */
+    public BlockSolver( Board board, int startingX, int startingY ) {
+        this( board, new ArrayVisitBoard(board.getSquareCount()), startingX,
+              startingY );
+    }
+
+    /**
+     * Check if the board can be split into blocks
+     *
+     * @param board     The board to check
+     * @return      true, if the board can be toured block by block
+     */
+    public static boolean canSplit( Board board ) {
+        return board.getLeaper().equals( Leaper.KNIGHT ) &&
+                (board.getWidth() >= 2 * MIN_BLOCK_SIZE) &&
+                (board.getHeight() >= 2 * MIN_BLOCK_SIZE) &&
+                (board.getSquareCount() % 2 == 0);
+    }
+
+    /**
+     * Tour the board, filling the blocks on the common ForkJoinPool.
+     *
+     * @return      true, if the tour is complete; false otherwise
+     */
+    public boolean solve() {
+        return solve( ForkJoinPool.commonPool() );
+    }
+
+    /**
+     * Tour the board, filling the blocks on the given ForkJoinPool.
+     *
+     * @param pool      The pool to fill the blocks on
+     * @return      true, if the tour is complete; false otherwise
+     */
+    public boolean solve( ForkJoinPool pool ) {
+        long start = SolverMetrics.ENABLED ? System.nanoTime() : 0;
+        boolean planned = canSplit( _board ) && plan();
+
+        if( SolverMetrics.ENABLED )
+            SolverMetrics.endPhase( SolverMetrics.Phase.PLAN, start );
+
+        if( planned ) {
+            start = SolverMetrics.ENABLED ? System.nanoTime() : 0;
+            pool.invoke( new FillTask(0, blockPaths.length) );
+
+            if( SolverMetrics.ENABLED )
+                SolverMetrics.endPhase( SolverMetrics.Phase.FILL, start );
+            return true;
+        }
+
+        // Not splittable; tour the board in one piece
+        Solver solver = new Solver( _board, _visit, startingX, startingY );
+        solver.setTieBreak( TieBreak.CENTER );
+        return solver.solve( SOLVER_BUDGET * _board.getSquareCount() );
+    }
+
+    /**
+     * Obtain the board marking the Knight-piece's visits
+     *
+     * @return      The 2D array representing the board, indexed by [x][y]
+     */
+    public int[][] getBoard() {
+        int[][] result = new int[_board.getWidth()][_board.getHeight()];
+
+        int square = 0;
+        for( int j = 0; j < _board.getHeight(); j++ ) {
+            for( int i = 0; i < _board.getWidth(); i++ ) {
+                result[i][j] = _visit.get( square++ );
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Obtain a live view of the board marking the Knight-piece's visits.
+     *
+     * @return      The visit storage, indexed by square
+     */
+    public VisitBoard getVisitBoard() {
+        return _visit;
+    }
+
+    /**
+     * Split a length into parts of about BLOCK_SIZE.
+     *
+     * @param length    The length to split
+     * @param even      Whether an even number of parts is required
+     * @return      The start of each part, followed by the length itself
+     */
+    private static int[] split( int length, boolean even ) {
+        int parts = Math.max( 2, length / BLOCK_SIZE );
+        if( even && (parts % 2 == 1) )
+            parts--;
+
+        int[] result = new int[parts + 1];
+        for( int i = 0; i <= parts; i++ )
+            result[i] = (int) ((long) length * i / parts);
+
+        return result;
+    }
+
+    /**
+     * Lay out the cycle through the blocks and choose every block's path.
+     *
+     * @return      true, if every block has a path; false otherwise
+     */
+    private boolean plan() {
+        columnStarts = split( _board.getWidth(), false );
+        rowStarts = split( _board.getHeight(), true );
+
+        int columns = columnStarts.length - 1;
+        int rows = rowStarts.length - 1;
+        int blockCount = columns * rows;
+
+        // Along the top row, snake through the other columns, then back up
+        // the first column
+        blockColumns = new int[blockCount];
+        blockRows = new int[blockCount];
+        int index = 0;
+        for( int column = 0; column < columns; column++ ) {
+            blockRows[index] = 0;
+            blockColumns[index++] = column;
+        }
+        for( int row = 1; row < rows; row++ ) {
+            for( int i = 1; i < columns; i++ ) {
+                blockRows[index] = row;
+                blockColumns[index++] = (row % 2 == 1) ? columns - i : i;
+            }
+        }
+        for( int row = rows - 1; row > 0; row-- ) {
+            blockRows[index] = row;
+            blockColumns[index++] = 0;
+        }
+
+        int[] entries = new int[blockCount];    // Entry square of each block
+        int[] exits = new int[blockCount];      // Exit square of each block
+        Map<Long, long[]> transitions = new HashMap<Long, long[]>();
+        int last = blockCount - 1;
+
+        // The move closing the cycle fixes where the first block is entered
+        for( long closing : getTransitions(last, transitions) ) {
+            exits[last] = (int) (closing >>> 32);
+            entries[0] = (int) closing;
+
+            if( planBlocks(entries, exits, transitions) ) {
+                locateStart();
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Choose the exit of every block but the last, each one such that the
+     * block has a path from its entry to its exit.
+     *
+     * @param entries       Entry square of each block; the first is set
+     * @param exits         Exit square of each block; the last is set
+     * @param transitions   Moves between blocks found so far
+     * @return      true, if every block has a path; false otherwise
+     */
+    private boolean planBlocks( int[] entries, int[] exits,
+                                Map<Long, long[]> transitions ) {
+        int last = blockRows.length - 1;
+        blockPaths = new int[last + 1][];
+
+        for( int i = 0; i < last; i++ ) {
+            int[] path = null;
+
+            for( long transition : getTransitions(i, transitions) ) {
+                int exit = (int) (transition >>> 32);
+                int nextEntry = (int) transition;
+
+                path = getPath( i, entries[i], exit );
+                if( path == null )
+                    continue;
+
+                // The last block's exit is already fixed, so its path has to
+                // be settled along with the move into it
+                if( (i + 1 == last) &&
+                        (getPath(last, nextEntry, exits[last]) == null) ) {
+                    path = null;
+                    continue;
+                }
+
+                exits[i] = exit;
+                entries[i + 1] = nextEntry;
+                break;
+            }
+
+            if( path == null )
+                return false;
+
+            blockPaths[i] = path;
+        }
+
+        blockPaths[last] = getPath( last, entries[last], exits[last] );
+        return blockPaths[last] != null;
+    }
+
+    /**
+     * Number the blocks' squares along the cycle and find where the starting
+     * square falls on it.
+     */
+    private void locateStart() {
+        blockOffsets = new int[blockPaths.length];
+
+        int offset = 0;
+        for( int i = 0; i < blockPaths.length; i++ ) {
+            blockOffsets[i] = offset;
+            offset += blockPaths[i].length;
+
+            int x = startingX - columnStarts[blockColumns[i]];
+            int y = startingY - rowStarts[blockRows[i]];
+            int width = getBlockWidth( i );
+
+            if( (x >= 0) && (y >= 0) && (x < width) &&
+                    (y < getBlockHeight(i)) ) {
+                int square = y * width + x;
+                int[] path = blockPaths[i];
+
+                for( int j = 0; j < path.length; j++ ) {
+                    if( path[j] == square )
+                        startOffset = blockOffsets[i] + j;
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the width of a block on the cycle
+     *
+     * @param block     Index of the block on the cycle
+     * @return      The block's width
+     */
+    private int getBlockWidth( int block ) {
+        return columnStarts[blockColumns[block] + 1] -
+                columnStarts[blockColumns[block]];
+    }
+
+    /**
+     * Get the height of a block on the cycle
+     *
+     * @param block     Index of the block on the cycle
+     * @return      The block's height
+     */
+    private int getBlockHeight( int block ) {
+        return rowStarts[blockRows[block] + 1] - rowStarts[blockRows[block]];
+    }
+
+    /**
+     * Find the moves which lead from a block into the next one on the cycle.
+     *
+     * Each move is packed as the exit square within the block (high half) and
+     * the entry square within the next block (low half). Moves near the middle
+     * of the shared side come first.
+     *
+     * @param block         Index of the block on the cycle
+     * @param transitions   Moves found so far, reused between equal blocks
+     * @return      The packed moves
+     */
+    private long[] getTransitions( int block, Map<Long, long[]> transitions ) {
+        int next = (block + 1) % blockRows.length;
+        int width = getBlockWidth( block );
+        int height = getBlockHeight( block );
+        int nextWidth = getBlockWidth( next );
+        int nextHeight = getBlockHeight( next );
+
+        int direction;
+        if( blockColumns[next] > blockColumns[block] )
+            direction = RIGHT;
+        else if( blockColumns[next] < blockColumns[block] )
+            direction = LEFT;
+        else if( blockRows[next] > blockRows[block] )
+            direction = DOWN;
+        else
+            direction = UP;
+
+        long key = ((((long) width * 64 + height) * 64 + nextWidth) * 64 +
+                    nextHeight) * 4 + direction;
+        long[] result = transitions.get( key );
+        if( result != null )
+            return result;
+
+        // Origin of the next block relative to this one
+        int xOrigin = (direction == RIGHT) ? width :
+                        (direction == LEFT) ? -nextWidth : 0;
+        int yOrigin = (direction == DOWN) ? height :
+                        (direction == UP) ? -nextHeight : 0;
+
+        MoveTable table = _board.getMoveTable();
+        final List<long[]> moves = new ArrayList<long[]>();
+        for( int y = 0; y < height; y++ ) {
+            for( int x = 0; x < width; x++ ) {
+                for( int k = 0; k < table.getMoveCount(); k++ ) {
+                    int xNext = x + table.getXOffset(k) - xOrigin;
+                    int yNext = y + table.getYOffset(k) - yOrigin;
+
+                    if( (xNext < 0) || (yNext < 0) || (xNext >= nextWidth) ||
+                            (yNext >= nextHeight) )
+                        continue;
+
+                    // Distance of the move from the middle of the shared side
+                    long distance = ((direction == RIGHT) ||
+                                        (direction == LEFT)) ?
+                            Math.abs( 2 * y - height + 1 ) :
+                            Math.abs( 2 * x - width + 1 );
+
+                    moves.add( new long[] { distance,
+                        ((long) (y * width + x) << 32) |
+                                (yNext * nextWidth + xNext) } );
+                }
+            }
+        }
+
+        Collections.sort( moves, new Comparator<long[]>() {
+            public int compare( long[] first, long[] second ) {
+                return Long.compare( first[0], second[0] );
+            }
+        });
+
+        result = new long[moves.size()];
+        for( int i = 0; i < result.length; i++ )
+            result[i] = moves.get(i)[1];
+
+        transitions.put( key, result );
+        return result;
+    }
+
+    /**
+     * Find a path through a block from its entry square to its exit square.
+     *
+     * @param block     Index of the block on the cycle
+     * @param entry     Square the path starts on, within the block
+     * @param exit      Square the path ends on, within the block
+     * @return      The block's squares in path order, or null if no path
+     *              was found
+     */
+    private int[] getPath( int block, int entry, int exit ) {
+        int width = getBlockWidth( block );
+        int height = getBlockHeight( block );
+
+        if( entry == exit )
+            return null;
+
+        // A path alternates colours: both ends share a colour exactly when it
+        // covers an odd number of squares, and then it's the corners' colour
+        int entryColour = (entry % width + entry / width) % 2;
+        int exitColour = (exit % width + exit / width) % 2;
+        if( (width * height) % 2 == 1 ) {
+            if( (entryColour != 0) || (exitColour != 0) )
+                return null;
+        }
+        else if( entryColour == exitColour )
+            return null;
+
+        long size = (long) width * 64 + height;
+        Long key = (((size << 20) + entry) << 20) + exit;
+        int[] path = PATHS.get( key );
+
+        if( path == null ) {
+            path = solvePath( width, height, entry, exit );
+            int[] existing = PATHS.putIfAbsent( key, path );
+            if( existing != null )
+                path = existing;
+        }
+
+        return (path == NO_PATH) ? null : path;
+    }
+
+    /**
+     * Search for a path through a block of the given size, trying each
+     * tie-breaking rule in turn.
+     *
+     * @param width     Width of the block
+     * @param height    Height of the block
+     * @param entry     Square the path starts on
+     * @param exit      Square the path ends on
+     * @return      The block's squares in path order, or NO_PATH
+     */
+    private static int[] solvePath( int width, int height, int entry,
+                                    int exit ) {
+        Board block = new Board( width, height );
+
+        for( TieBreak tieBreak : TieBreak.values() ) {
+            Solver solver = new Solver( block, block.getX(entry),
+                                        block.getY(entry) );
+            solver.setTieBreak( tieBreak );
+            solver.setFinalSquare( block.getX(exit), block.getY(exit) );
+
+            if( solver.solve(BLOCK_BUDGET) ) {
+                VisitBoard visits = solver.getVisitBoard();
+                int[] path = new int[visits.getSquareCount()];
+
+                for( int square = 0; square < path.length; square++ )
+                    path[visits.get(square)] = square;
+
+                return path;
+            }
+        }
+
+        return NO_PATH;
+    }
+
+    /**
+     * Copies the paths of a range of blocks onto the board, splitting large
+     * ranges between the pool's threads.
+     */
+    private class FillTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int first;    // First block to fill
+        private final int end;      // Block after the last one to fill
+
+        FillTask( int first, int end ) {
+            this.first = first;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if( end - first > BLOCKS_PER_TASK ) {
+                int middle = (first + end) >>> 1;
+                invokeAll( new FillTask(first, middle),
+                           new FillTask(middle, end) );
+                return;
+            }
+
+            int squareCount = _board.getSquareCount();
+            for( int i = first; i < end; i++ ) {
+                int[] path = blockPaths[i];
+                int width = getBlockWidth( i );
+                int origin = _board.getSquare( columnStarts[blockColumns[i]],
+                                               rowStarts[blockRows[i]] );
+
+                for( int j = 0; j < path.length; j++ ) {
+                    int square = origin + (path[j] / width) *
+                            _board.getWidth() + path[j] % width;
+                    int move = blockOffsets[i] + j - startOffset;
+
+                    _visit.set( square, (move < 0) ? move + squareCount :
+                                                     move );
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,202 @@
+/**
+ * Geometry of a rectangular chessboard.
+ *
+ * A Board only describes the dimensions of the chessboard and how squares are
+ * addressed; it holds no per-game state, so a single instance can be shared
+ * by any number of Solvers running at the same time. Squares are addressed
+ * either by a pair of x- and y-coordinates or by a single square index
+ * (y * width + x), which lets per-square data live in one flat array instead
+ * of an array of rows.
+ *
+ * A board also names the Leaper toured on it, the Knight-piece unless given,
+ * so that every Solver, cache and table built for the board moves that piece.
+ *
+ * @author Darren M.
+ */
+public class Board {
+    // The standard 8x8 chessboard
+    public static final Board STANDARD =
+            new Board( Constants.BOARD_WIDTH, Constants.BOARD_HEIGHT );
+
+    private final int width;    // Width of the board
+    private final int height;   // Height of the board
+    private final Leaper _leaper;   // The piece toured on the board
+
+    /**
+     * A rectangular board of the given dimensions.
+     *
+     * @param width     Width of the board
+     * @param height    Height of the board
+     */
+    public Board( int width, int height ) {
+        this( width, height, Leaper.KNIGHT );
+    }
+
+    /**
+     * A rectangular board of the given dimensions, toured by a Leaper.
+     *
+     * @param width     Width of the board
+     * @param height    Height of the board
+     * @param leaper    The piece toured on the board
+     */
+    public Board( int width, int height, Leaper leaper ) {
+        if( (width <= 0) || (height <= 0) )
+            throw new IllegalArgumentException("Board dimensions must be " +
+                                                "positive: " + width + "x" +
+                                                height );
+        if( (long) width * height > Integer.MAX_VALUE )
+            throw new IllegalArgumentException("Board too large: " + width +
+                                                "x" + height );
+
+        this.width = width;
+        this.height = height;
+        _leaper = leaper;
+    }
+
+    /**
+     * Get the width of the board
+     *
+     * @return      The board width
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Get the height of the board
+     *
+     * @return      The board height
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Get the piece toured on the board
+     *
+     * @return      The board's Leaper
+     */
+    public Leaper getLeaper() {
+        return _leaper;
+    }
+
+    /**
+     * Get a board of the given dimensions, toured by the same Leaper
+     *
+     * @param width     Width of the board
+     * @param height    Height of the board
+     * @return      The board
+     */
+    public Board resize( int width, int height ) {
+        return new Board( width, height, _leaper );
+    }
+
+    /**
+     * Get the number of squares on the board
+     *
+     * @return      The number of squares
+     */
+    public int getSquareCount() {
+        return width * height;
+    }
+
+    /**
+     * Check if a pair of coordinates lies on the board
+     *
+     * @param xCoordinate   The x-coordinate to check
+     * @param yCoordinate   The y-coordinate to check
+     * @return      true, if the coordinates are on the board; false otherwise
+     */
+    public boolean contains( int xCoordinate, int yCoordinate ) {
+        return (xCoordinate >= 0) && (yCoordinate >= 0) &&
+                (xCoordinate < width) && (yCoordinate < height);
+    }
+
+    /**
+     * Convert a pair of coordinates into a square index.
+     *
+     * @param xCoordinate   The x-coordinate of the square
+     * @param yCoordinate   The y-coordinate of the square
+     * @return      The square's index
+     */
+    public int getSquare( int xCoordinate, int yCoordinate ) {
+        return yCoordinate * width + xCoordinate;
+    }
+
+    /**
+     * Get the x-coordinate of a square index
+     *
+     * @param square    The square's index
+     * @return      The x-coordinate of the square
+     */
+    public int getX( int square ) {
+        return square % width;
+    }
+
+    /**
+     * Get the y-coordinate of a square index
+     *
+     * @param square    The square's index
+     * @return      The y-coordinate of the square
+     */
+    public int getY( int square ) {
+        return square / width;
+    }
+
+    /**
+     * Get the Position of a square, shared by every caller on boards of up
+     * to MoveTable.MAX_SHARED_POSITIONS squares.
+     *
+     * @param square    The square's index
+     * @return      The Position of the square
+     */
+    public Position getPosition( int square ) {
+        return getMoveTable().getPosition( square );
+    }
+
+    /**
+     * Get the Position of a pair of coordinates, shared as by
+     * getPosition(square) when they lie on the board.
+     *
+     * @param xCoordinate   The x-coordinate of the position
+     * @param yCoordinate   The y-coordinate of the position
+     * @return      The Position of the coordinates
+     */
+    public Position getPosition( int xCoordinate, int yCoordinate ) {
+        return getMoveTable().getPosition( xCoordinate, yCoordinate );
+    }
+
+    /**
+     * Get the precomputed moves of this board's Leaper.
+     *
+     * @return      The shared MoveTable for boards of this size and Leaper
+     */
+    public MoveTable getMoveTable() {
+        return MoveTable.forBoard( this );
+    }
+
+    @Override
+    public boolean equals( Object other ) {
+        if( this == other )
+            return true;
+        else if(! (other instanceof Board) )
+            return false;
+
+        Board board = (Board) other;
+        return (width == board.width) && (height == board.height) &&
+                _leaper.equals( board._leaper );
+    }
+
+    @Override
+    public int hashCode() {
+        return (31 * width + height) * 31 + _leaper.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        if( _leaper.equals(Leaper.KNIGHT) )
+            return width + "x" + height;
+
+        return width + "x" + height + " " + _leaper;
+    }
+}
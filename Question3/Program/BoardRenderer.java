@@ -0,0 +1,385 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Draws a tour on an ANSI terminal, redrawing only what each move changes.
+ *
+ * The board is laid out as Play prints it, one "[NN]" cell per square, and
+ * drawn in full once; after that a move only rewrites two cells, the square
+ * the Knight-piece left (which gets its move number) and the one it landed
+ * on (which gets the "**"), each reached with a cursor-addressing escape code,
+ * plus the move number below the board.
+ *
+ * Boards larger than the terminal are shown through a viewport of the cells
+ * that fit on it. When the Knight-piece jumps out of view, the viewport
+ * scrolls to center it again and is redrawn, which costs no more than the
+ * terminal's worth of cells however large the board is.
+ *
+ * All output goes through a single buffer, which is handed to the stream at
+ * the end of each frame; endFrame() holds frames back to the given frame rate,
+ * so any number of moves between two frames reach the terminal in one write.
+ *
+ * @author Darren M.
+ */
+public class BoardRenderer {
+    public static final int DEFAULT_FPS = 30;       // Frames per second
+    public static final int DEFAULT_COLUMNS = 80;   // Terminal width
+    public static final int DEFAULT_LINES = 24;     // Terminal height
+    private static final int STATUS_LINES = 4;      // Lines below the board:
+                                                    // a gap, the move number,
+                                                    // the prompt, and the line
+                                                    // the user's enter echoes
+    private static final int BUFFER_SIZE = 1 << 16; // Bytes per write
+    private static final byte ESCAPE = 0x1B;        // Starts escape codes
+
+    // Control sequences: cursor to the top-left corner, clear the terminal,
+    // and clear the rest of the line
+    private static final byte[] HOME = ascii( "\033[H" );
+    private static final byte[] CLEAR = ascii( "\033[2J" );
+    private static final byte[] CLEAR_LINE = ascii( "\033[K" );
+    private static final byte[] MOVE_NUMBER = ascii( "Move number:  " );
+
+    private final Board _board;         // Geometry of the toured board
+    private final VisitBoard _visit;    // The move number of each square
+    private final OutputStream _out;    // The terminal
+    private final byte[] _buffer;       // Output waiting to be written
+    private int position;               // Bytes used in the buffer
+    private final int cellWidth;        // Digits in each cell
+    private final int viewRows;         // Rows of cells in the viewport
+    private final int viewColumns;      // Columns of cells in the viewport
+    private final long frameNanos;      // Time between two frames
+    private long nextFrame;             // When the next frame is due
+    private int top;                    // First board row in the viewport
+    private int left;                   // First board column in the view
+    private int current;                // The Knight-piece's square
+    private int moveNumber;             // Number of moves made so far
+    private boolean redraw;             // Whether the viewport is stale
+
+    /**
+     * BoardRenderer draws the visits of a board onto a terminal of the given
+     * size.
+     *
+     * @param board     Geometry of the toured board
+     * @param visits    The move number of each square, as the tour fills it
+     * @param out       The terminal to draw on; it needs no buffering
+     * @param fps       Most frames drawn a second
+     * @param columns   Width of the terminal, in characters
+     * @param lines     Height of the terminal, in lines
+     */
+    public BoardRenderer( Board board, VisitBoard visits, OutputStream out,
+                          int fps, int columns, int lines ) {
+        if( fps <= 0 )
+            throw new IllegalArgumentException("Frame rate must be positive: "
+                                                + fps );
+
+        _board = board;
+        _visit = visits;
+        _out = out;
+        _buffer = new byte[BUFFER_SIZE];
+        position = 0;
+
+        // Every cell is as wide as the largest possible move number
+        cellWidth = Math.max( 2, Integer.toString(
+                                    board.getSquareCount() - 1).length() );
+        if( (columns < cellWidth + 2) || (lines <= STATUS_LINES) )
+            throw new IllegalArgumentException("A " + columns + "x" + lines +
+                                                " terminal can't show a " +
+                                                "single cell");
+
+        // Play prints a line per x-coordinate, each cell of it a y-coordinate
+        viewRows = Math.min( lines - STATUS_LINES, board.getWidth() );
+        viewColumns = Math.min( columns / (cellWidth + 2), board.getHeight() );
+        frameNanos = 1000000000L / fps;
+        nextFrame = System.nanoTime();
+    }
+
+    /**
+     * Clear the terminal and draw the whole viewport around the Knight-piece,
+     * with the next frame.
+     *
+     * @param square        The Knight-piece's square
+     * @param moveNumber    Number of moves made so far
+     */
+    public void draw( int square, int moveNumber ) {
+        current = square;
+        this.moveNumber = moveNumber;
+        center( square );
+        redraw = true;
+    }
+
+    /**
+     * Move the Knight-piece to its next square, redrawing the two cells the
+     * move changes, or the viewport if the square is out of view.
+     *
+     * A viewport that scrolled is drawn once, when the frame ends, however
+     * many moves the frame holds; until then, moves draw nothing.
+     *
+     * @param square    The square moved to, numbered with the next move
+     * @throws IOException  If the terminal can't be written to
+     */
+    public void move( int square ) throws IOException {
+        int previous = current;
+
+        current = square;
+        moveNumber++;
+
+        if(! isInView(square) ) {
+            center( square );
+            redraw = true;
+        }
+
+        if( redraw )
+            return;
+
+        if( isInView(previous) )
+            writeCell( previous );
+        writeCell( square );
+        writeStatus();
+    }
+
+    /**
+     * Show a message in place of the prompt below the board, and leave the
+     * cursor after it.
+     *
+     * @param message   The message to show
+     * @throws IOException  If the terminal can't be written to
+     */
+    public void prompt( String message ) throws IOException {
+        if( redraw )
+            writeViewport();
+
+        moveTo( viewRows + 3, 1 );
+        writeBytes( CLEAR_LINE );
+        writeBytes( message.getBytes(StandardCharsets.UTF_8) );
+        flush();
+    }
+
+    /**
+     * Wait for the next frame to be due, then hand it to the terminal.
+     *
+     * @throws IOException  If the terminal can't be written to
+     */
+    public void endFrame() throws IOException {
+        for( long wait = nextFrame - System.nanoTime(); wait > 0;
+                wait = nextFrame - System.nanoTime() )
+            LockSupport.parkNanos( wait );
+
+        flush();
+
+        // Frames that fell behind are dropped rather than caught up on
+        nextFrame = Math.max( nextFrame + frameNanos, System.nanoTime() );
+    }
+
+    /**
+     * Hand everything drawn so far to the terminal.
+     *
+     * @throws IOException  If the terminal can't be written to
+     */
+    public void flush() throws IOException {
+        if( redraw )
+            writeViewport();
+
+        _out.write( _buffer, 0, position );
+        _out.flush();
+        position = 0;
+    }
+
+    /**
+     * Get the number of cells shown on each line of the terminal
+     *
+     * @return      Columns of cells in the viewport
+     */
+    public int getViewColumns() {
+        return viewColumns;
+    }
+
+    /**
+     * Get the number of lines of cells shown on the terminal
+     *
+     * @return      Rows of cells in the viewport
+     */
+    public int getViewRows() {
+        return viewRows;
+    }
+
+    /**
+     * Encode fixed text for the terminal
+     *
+     * @param text      The text, in ASCII
+     * @return      Its bytes
+     */
+    private static byte[] ascii( String text ) {
+        return text.getBytes( StandardCharsets.US_ASCII );
+    }
+
+    /**
+     * Scroll the viewport so that a square is as close to its center as the
+     * board's edges allow.
+     *
+     * @param square    The square to center on
+     */
+    private void center( int square ) {
+        top = Math.max( 0, Math.min(_board.getX(square) - viewRows / 2,
+                                    _board.getWidth() - viewRows) );
+        left = Math.max( 0, Math.min(_board.getY(square) - viewColumns / 2,
+                                     _board.getHeight() - viewColumns) );
+    }
+
+    /**
+     * Clear the terminal and draw every cell of the viewport, dropping the
+     * cells drawn since the last write, which the clear would wipe anyway.
+     *
+     * @throws IOException  If the terminal can't be written to
+     */
+    private void writeViewport() throws IOException {
+        position = 0;
+        redraw = false;
+
+        writeBytes( HOME );
+        writeBytes( CLEAR );
+        for( int row = top; row < top + viewRows; row++ ) {
+            for( int column = left; column < left + viewColumns; column++ )
+                writeCell( _board.getSquare(row, column) );
+        }
+
+        writeStatus();
+    }
+
+    /**
+     * Check if a square is within the viewport
+     *
+     * @param square    The square to check
+     * @return      true, if its cell is on the terminal
+     */
+    private boolean isInView( int square ) {
+        int row = _board.getX( square ) - top;
+        int column = _board.getY( square ) - left;
+
+        return (row >= 0) && (row < viewRows) &&
+                (column >= 0) && (column < viewColumns);
+    }
+
+    /**
+     * Draw the cell of a square in the viewport: blank if unvisited, "**" for
+     * the Knight-piece, and otherwise its move number, with leading zeroes.
+     *
+     * @param square    The square to draw
+     * @throws IOException  If the terminal can't be written to
+     */
+    private void writeCell( int square ) throws IOException {
+        int visit = _visit.get( square );
+
+        moveTo( _board.getX(square) - top + 1,
+                (_board.getY(square) - left) * (cellWidth + 2) + 1 );
+        writeByte( '[' );
+
+        if( visit == Constants.EMPTY_SLOT )
+            writeRepeated( ' ', cellWidth );
+        else if( square == current )
+            writeRepeated( '*', cellWidth );
+        else
+            writeNumber( visit, cellWidth );
+
+        writeByte( ']' );
+    }
+
+    /**
+     * Rewrite the move number below the board.
+     *
+     * @throws IOException  If the terminal can't be written to
+     */
+    private void writeStatus() throws IOException {
+        moveTo( viewRows + 2, 1 );
+        writeBytes( MOVE_NUMBER );
+        writeNumber( moveNumber, 1 );
+        writeBytes( CLEAR_LINE );
+    }
+
+    /**
+     * Move the cursor to a line and column of the terminal
+     *
+     * @param line      The line, counted from 1
+     * @param column    The column, counted from 1
+     * @throws IOException  If the terminal can't be written to
+     */
+    private void moveTo( int line, int column ) throws IOException {
+        writeByte( ESCAPE );
+        writeByte( '[' );
+        writeNumber( line, 1 );
+        writeByte( ';' );
+        writeNumber( column, 1 );
+        writeByte( 'H' );
+    }
+
+    /**
+     * Write a non-negative number in decimal, padded with leading zeroes
+     *
+     * @param number    The number to write
+     * @param width     The fewest digits to write
+     * @throws IOException  If the terminal can't be written to
+     */
+    private void writeNumber( int number, int width ) throws IOException {
+        int digits = 1;
+        for( int rest = number / 10; rest > 0; rest /= 10 )
+            digits++;
+
+        writeRepeated( '0', width - digits );
+        if( position + digits > _buffer.length )
+            flushBuffer();
+
+        for( int i = position + digits - 1; i >= position; i-- ) {
+            _buffer[i] = (byte) ('0' + number % 10);
+            number /= 10;
+        }
+        position += digits;
+    }
+
+    /**
+     * Write a character several times
+     *
+     * @param character     The character to write
+     * @param count         Number of times to write it
+     * @throws IOException  If the terminal can't be written to
+     */
+    private void writeRepeated( char character, int count )
+            throws IOException {
+        for( int i = 0; i < count; i++ )
+            writeByte( character );
+    }
+
+    /**
+     * Write a run of bytes
+     *
+     * @param bytes     The bytes to write
+     * @throws IOException  If the terminal can't be written to
+     */
+    private void writeBytes( byte[] bytes ) throws IOException {
+        for( int i = 0; i < bytes.length; i++ )
+            writeByte( bytes[i] );
+    }
+
+    /**
+     * Write a single byte
+     *
+     * @param value     The byte to write, in the low 8 bits
+     * @throws IOException  If the terminal can't be written to
+     */
+    private void writeByte( int value ) throws IOException {
+        if( position == _buffer.length )
+            flushBuffer();
+
+        _buffer[position++] = (byte) value;
+    }
+
+    /**
+     * Hand the buffered output to the terminal, mid-frame
+     *
+     * @throws IOException  If the terminal can't be written to
+     */
+    private void flushBuffer() throws IOException {
+        _out.write( _buffer, 0, position );
+        position = 0;
+    }
+}
@@ -0,0 +1,149 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A VisitBoard kept outside of the Java heap in direct ByteBuffers.
+ *
+ * A single buffer cannot address more than 2GB, so the board is split into
+ * chunks of 2^28 squares (1GB) each; boards of any size a square index can
+ * address are therefore supported. As with ArrayVisitBoard, move numbers are
+ * stored offset by one so that freshly allocated (zeroed) memory reads as an
+ * empty board.
+ *
+ * The board can also be laid over buffers that already exist, such as the
+ * memory-mapped contents of a TourFile.
+ *
+ * @author Darren M.
+ */
+public class DirectVisitBoard implements VisitBoard {
+    private static final int CHUNK_SHIFT = 28;  // log2 of squares per chunk
+    private static final int CHUNK_MASK = (1 << CHUNK_SHIFT) - 1;
+    public static final int CHUNK_SQUARES = 1 << CHUNK_SHIFT;
+
+    private final ByteBuffer[] _chunks;     // Move number + 1 of each square
+    private final int squareCount;          // The number of squares
+
+    /**
+     * An empty board with the given number of squares.
+     *
+     * @param squareCount   The number of squares on the board
+     */
+    public DirectVisitBoard( int squareCount ) {
+        this.squareCount = squareCount;
+        _chunks = new ByteBuffer[getChunkCount( squareCount )];
+
+        for( int i = 0; i < _chunks.length; i++ ) {
+            _chunks[i] = ByteBuffer.allocateDirect(
+                                        getChunkSquares(squareCount, i) * 4 )
+                                   .order( ByteOrder.nativeOrder() );
+        }
+    }
+
+    /**
+     * A board laid over existing buffers.
+     *
+     * Each buffer holds CHUNK_SQUARES squares, bar the last which holds the
+     * rest, as laid out by getChunkCount() and getChunkSquares(). The buffers'
+     * own byte order is used; read-only buffers give a read-only board.
+     *
+     * @param chunks        The buffers holding the squares
+     * @param squareCount   The number of squares on the board
+     */
+    public DirectVisitBoard( ByteBuffer[] chunks, int squareCount ) {
+        if( chunks.length != getChunkCount(squareCount) )
+            throw new IllegalArgumentException( squareCount + " squares " +
+                                                "need " +
+                                                getChunkCount(squareCount) +
+                                                " chunks, not " +
+                                                chunks.length );
+
+        this.squareCount = squareCount;
+        _chunks = chunks.clone();
+    }
+
+    /**
+     * Get the number of chunks a board is split into
+     *
+     * @param squareCount   The number of squares on the board
+     * @return      The number of chunks
+     */
+    public static int getChunkCount( int squareCount ) {
+        return Math.max( 1, (int) (((long) squareCount + CHUNK_MASK) >>>
+                                    CHUNK_SHIFT) );
+    }
+
+    /**
+     * Get the number of squares held by one chunk of a board
+     *
+     * @param squareCount   The number of squares on the board
+     * @param chunk         Index of the chunk
+     * @return      The number of squares in the chunk
+     */
+    public static int getChunkSquares( int squareCount, int chunk ) {
+        long remaining = (long) squareCount - ((long) chunk << CHUNK_SHIFT);
+        return (int) Math.min( remaining, CHUNK_SQUARES );
+    }
+
+    /**
+     * Copy every square of another board into this one.
+     *
+     * Boards stored the same way are copied buffer to buffer; anything else
+     * is copied square by square.
+     *
+     * @param source    The board to copy, of the same size as this one
+     */
+    public void copyFrom( VisitBoard source ) {
+        if( source.getSquareCount() != squareCount )
+            throw new IllegalArgumentException("Cannot copy " +
+                                                source.getSquareCount() +
+                                                " squares onto " +
+                                                squareCount );
+
+        if( source instanceof DirectVisitBoard ) {
+            ByteBuffer[] sourceChunks = ((DirectVisitBoard) source)._chunks;
+            boolean sameOrder = true;
+
+            for( int i = 0; i < _chunks.length; i++ )
+                sameOrder &= (sourceChunks[i].order() == _chunks[i].order());
+
+            if( sameOrder ) {
+                for( int i = 0; i < _chunks.length; i++ ) {
+                    _chunks[i].duplicate().put(
+                            sourceChunks[i].duplicate().clear() );
+                }
+                return;
+            }
+        }
+
+        for( int square = 0; square < squareCount; square++ )
+            set( square, source.get(square) );
+    }
+
+    @Override
+    public int getSquareCount() {
+        return squareCount;
+    }
+
+    @Override
+    public int get( int square ) {
+        return _chunks[square >>> CHUNK_SHIFT]
+                .getInt( (square & CHUNK_MASK) << 2 ) - 1;
+    }
+
+    @Override
+    public void set( int square, int move ) {
+        _chunks[square >>> CHUNK_SHIFT]
+                .putInt( (square & CHUNK_MASK) << 2, move + 1 );
+    }
+
+    @Override
+    public void clear() {
+        for( ByteBuffer chunk : _chunks ) {
+            int i = 0;
+            for( ; i + 8 <= chunk.capacity(); i += 8 )
+                chunk.putLong( i, 0L );
+            if( i < chunk.capacity() )
+                chunk.putInt( i, 0 );
+        }
+    }
+}
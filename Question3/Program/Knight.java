@@ -7,97 +7,73 @@ import java.util.List;
  * Performs the functions of a typical Knight-piece such as giving the
  * available number of moves and checking for movement validity. Also does
  * miscellaneous actions, such as giving its current position on the board.
+ * The piece moves as the Leaper of its board does, which is the Knight-piece's
+ * (1,2) jump unless the board was given another.
  * 
  * @author Darren M.
  */
 public class Knight {
     private int xPosition;  // X-coordinate of the Knight's chessboard position
     private int yPosition;  // Y-coordinate of the Knight's chessboard position
+    private Board _board;       // The chessboard the Knight is placed on
+    private MoveTable _table;   // Precomputed moves for the chessboard
 
     /**
      * Constructor for the Knight-piece object, based on a pair of x- and
-     * y-coordinates.
+     * y-coordinates on the given board.
      *
+     * @param board         The board the Knight-piece is placed on
      * @param startingX     Initial x-coordinate placement on the chessboard
      * @param startingY     Initial y-coordinate placement on the chessboard
      */
-    public Knight( int startingX, int startingY ) {
+    public Knight( Board board, int startingX, int startingY ) {
         xPosition = startingX;
         yPosition = startingY;
+        _board = board;
+        _table = board.getMoveTable();
     }
 
     /**
-     * Constructor for the Knight-piece object, based on a Position.
+     * Constructor for the Knight-piece object, based on a pair of x- and
+     * y-coordinates on the standard 8x8 board.
      *
-     * @param position      The position to set the Knight-piece on
+     * @param startingX     Initial x-coordinate placement on the chessboard
+     * @param startingY     Initial y-coordinate placement on the chessboard
      */
-    public Knight( Position position ) {
-        this( position.getXPosition(), position.getYPosition() );
+    public Knight( int startingX, int startingY ) {
+        this( Board.STANDARD, startingX, startingY );
     }
 
     /**
-     * Check if a knight can move from the starting coordinates to the
-     * ending coordinates.
-     *
-     * The Knight-piece can move 1 space on any axis, and 2 spaces on the
-     * remaining axis. If the given coordinates are a valid spot to move to
-     * under these constraints, the Knight-piece will take it.
-     *
-     * @param startingX     X-coordinate of the Knight-piece
-     * @param startingY     Y-coordinate of the Knight-piece
-     * @param xCoordinate   The destination position's x-coordinate
-     * @param yCoordinate   The destination position's y-coordinate
-     * @return      true, if the move is valid; false otherwise
+     * Constructor for the Knight-piece object, based on a Position on the
+     * given board.
+     *
+     * @param board         The board the Knight-piece is placed on
+     * @param position      The position to set the Knight-piece on
      */
-    private boolean checkMove( int startingX, int startingY, int xCoordinate,
-                                int yCoordinate ) {
-        //Check for minimum values
-        if( (startingX < 0) || (startingY < 0) )
-            return false;
-        else if( (xCoordinate < 0) || (yCoordinate < 0) )
-            return false;
-        //Check for maximum values
-        else if( startingX >= Constants.BOARD_WIDTH )
-            return false;
-        else if( startingY >= Constants.BOARD_HEIGHT )
-            return false;
-        else if( xCoordinate >= Constants.BOARD_WIDTH )
-            return false;
-        else if( yCoordinate >= Constants.BOARD_HEIGHT )
-            return false;
-
-        //Get the difference between the x-coordinates & y-coordinates
-        int xDifference = startingX - xCoordinate;
-        int yDifference = startingY - yCoordinate;
-
-        //Compensate for negative values
-        if( xDifference < 0 )
-            xDifference *= -1;
-
-        if( yDifference < 0 )
-            yDifference *= -1;
-
-
-        // A knight moves 1 in one axis...
-        // ..and 2 in either direction on the remaining axis
-        if( xDifference == 1 ) {
-            if( yDifference == 2 )
-                return true;
-        }
-        else if( xDifference == 2 ) {
-            if( yDifference == 1 )
-                return true;
-        }
+    public Knight( Board board, Position position ) {
+        this( board, position.getXPosition(), position.getYPosition() );
+    }
 
-        return false;
+    /**
+     * Constructor for the Knight-piece object, based on a Position on the
+     * standard 8x8 board.
+     *
+     * @param position      The position to set the Knight-piece on
+     */
+    public Knight( Position position ) {
+        this( Board.STANDARD, position );
     }
 
     /**
      * Check for the possible moves that can be made if the Knight-piece were
      * in the hypothetical coordinates.
      *
-     * Calculate all 8 moves that the Knight-piece can make. If any of them are
-     * valid, we store them in a List which is returned upon completion.
+     * The moves are read from the precomputed MoveTable; any of them which
+     * stay on the board are stored in a List which is returned upon
+     * completion. The Positions are the board's shared ones, but the List is
+     * new; callers on a hot path should use getMoveTable() instead, which
+     * answers the same question without allocating.
      *
      * @param xCoordinate   X-Coordinate where the Knight-piece might be placed
      * @param yCoordinate   Y-Coordinate where the Knight-piece might be placed
@@ -109,61 +85,21 @@ public class Knight {
         // Allocate the result List
         List<Position> result = new ArrayList<Position>();
 
-        int numberOfMoves = 8;  //The max amount of moves a Knight can make
-        int xFinal = 0;     // x-coordinate of the hypothetical move
-        int yFinal = 0;     // y-coordinate of the hypothetical move
-
-        // Iterate through a Knight-peice's unique moveset
-        for(int i = 0; i < numberOfMoves; i++) {
-            switch( i ) {
-                //North-West Movement
-                case 0:
-                    xFinal = xCoordinate - 1;
-                    yFinal = yCoordinate + 2;
-                    break;
-                //North-East Movement
-                case 1:
-                    xFinal = xCoordinate + 1;
-                    yFinal = yCoordinate + 2;
-                    break;
-                //East-North Movement
-                case 2:
-                    xFinal = xCoordinate + 2;
-                    yFinal = yCoordinate + 1;
-                    break;
-                //East-South Movement
-                case 3:
-                    xFinal = xCoordinate + 2;
-                    yFinal = yCoordinate - 1;
-                    break;
-                //South-East Movement
-                case 4:
-                    xFinal = xCoordinate + 1;
-                    yFinal = yCoordinate - 2;
-                    break;
-                //South-West Movement
-                case 5:
-                    xFinal = xCoordinate - 1;
-                    yFinal = yCoordinate - 2;
-                    break;
-                //West-South Movement
-                case 6:
-                    xFinal = xCoordinate - 2;
-                    yFinal = yCoordinate - 1;
-                    break;
-                //West-North Movement
-                case 7:
-                    xFinal = xCoordinate - 2;
-                    yFinal = yCoordinate + 1;
-                    break;
-            }
-
-            // Check the move; save the coordinates if it's valid
-            if( checkMove(xCoordinate, yCoordinate, xFinal, yFinal) ) {
-                result.add( new Position(xFinal, yFinal) );
-            }
+        // Positions off the board have no moves
+        if(! _table.contains(xCoordinate, yCoordinate) )
+            return result;
+
+        int square = _table.getSquare( xCoordinate, yCoordinate );
+        for( int mask = _table.getMoveMask(square); mask != 0;
+                mask &= mask - 1 ) {
+            int move = Integer.numberOfTrailingZeros( mask );
+
+            result.add( _table.getPosition(square + _table.getDelta(move)) );
         }
 
+        if( SolverMetrics.ENABLED )
+            SolverMetrics.MOVES_GENERATED.add( result.size() );
+
         return result;
     }
 
@@ -196,14 +132,41 @@ public class Knight {
         return getMovesFromPosition( xPosition, yPosition );
     }
 
+    /**
+     * Get the board the Knight-piece is placed on
+     *
+     * @return      The Knight-piece's chessboard
+     */
+    public Board getBoard() {
+        return _board;
+    }
+
+    /**
+     * Get the precomputed move table of the board the Knight-piece is on.
+     *
+     * @return      The shared MoveTable for the chessboard
+     */
+    public MoveTable getMoveTable() {
+        return _table;
+    }
+
+    /**
+     * Find the square index of the knight-piece's current position
+     *
+     * @return      The square index (y * width + x) of the Knight-piece
+     */
+    public int getSquare() {
+        return _table.getSquare( xPosition, yPosition );
+    }
+
     /**
      * Find the knight-piece's current position on the board
      *
-     * @return  The coordinates in an array, x-coordinate first and
-     *          y-coordinate following.
+     * @return  The Knight-piece's Position, shared with every other caller
+     *          while the Knight-piece is on the board
      */
     public Position getPosition() {
-        return new Position( xPosition, yPosition );
+        return _table.getPosition( xPosition, yPosition );
     }
 
     /**
@@ -216,17 +179,15 @@ public class Knight {
      *                      false: The Knight-piece couldn't perform the request
      */
     public boolean move( int xCoordinate, int yCoordinate ) {
-        // Check minimum boundaries
-        if( (xCoordinate < 0) || (yCoordinate < 0) )
+        // Check the boundaries
+        if(! _table.contains(xPosition, yPosition) )
             return false;
-        // Check maximum boundaries
-        else if( (xCoordinate >= Constants.BOARD_WIDTH) )
-            return false;
-        else if( (yCoordinate >= Constants.BOARD_HEIGHT) )
+        else if(! _table.contains(xCoordinate, yCoordinate) )
             return false;
 
         // As long as the move is valid, we move there
-        if( checkMove(xPosition, yPosition, xCoordinate, yCoordinate) ) {
+        if( _table.isMove(_table.getSquare(xPosition, yPosition),
+                          _table.getSquare(xCoordinate, yCoordinate)) ) {
             xPosition = xCoordinate;
             yPosition = yCoordinate;
             return true;
@@ -250,4 +211,26 @@ public class Knight {
         else
             return false;
     }
+
+    /**
+     * Move the piece to the designated square index.
+     *
+     * @param square    The square index to move to
+     * @return              true: Knight-piece has successfully moved
+     *                      false: The Knight-piece couldn't perform the request
+     */
+    public boolean moveToSquare( int square ) {
+        if( (square < 0) || (square >= _table.getSquareCount()) )
+            return false;
+        else if(! _table.contains(xPosition, yPosition) )
+            return false;
+
+        if( _table.isMove(getSquare(), square) ) {
+            xPosition = _table.getX( square );
+            yPosition = _table.getY( square );
+            return true;
+        }
+
+        return false;
+    }
 }
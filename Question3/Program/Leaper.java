@@ -0,0 +1,183 @@
+import java.util.Arrays;
+
+/**
+ * A leaper: a piece which jumps straight to any square m squares away along
+ * one axis and n squares along the other.
+ *
+ * The Knight-piece is the (1,2)-leaper; others, such as the camel (1,3), the
+ * zebra (2,3) and the giraffe (1,4), tour boards the same way. A leaper only
+ * contributes its move offsets, which the MoveTable turns into per-square
+ * masks, so every Solver tours with any leaper at the same speed.
+ *
+ * The offsets follow the Knight-piece's order, NW, NE, EN, ES, SE, SW, WS and
+ * WN, with the longer leg taking the place of the Knight-piece's 2; leapers
+ * whose legs are equal or zero have fewer than 8 distinct moves, and keep the
+ * first occurrence of each.
+ *
+ * @author Darren M.
+ */
+public class Leaper {
+    public static final Leaper KNIGHT = new Leaper( 1, 2 );
+    public static final Leaper CAMEL = new Leaper( 1, 3 );
+    public static final Leaper ZEBRA = new Leaper( 2, 3 );
+    public static final Leaper GIRAFFE = new Leaper( 1, 4 );
+
+    private static final String[] NAMES =
+            { "knight", "camel", "zebra", "giraffe" };
+    private static final Leaper[] NAMED = { KNIGHT, CAMEL, ZEBRA, GIRAFFE };
+
+    private final int shortLeg;     // Squares along the shorter axis
+    private final int longLeg;      // Squares along the longer axis
+    private final int[] xOffsets;   // X-offset of each distinct move
+    private final int[] yOffsets;   // Y-offset of each distinct move
+
+    /**
+     * A leaper jumping m squares along one axis and n along the other.
+     *
+     * @param m     Squares along one axis
+     * @param n     Squares along the other axis
+     */
+    public Leaper( int m, int n ) {
+        if( (m < 0) || (n < 0) || (m + n == 0) )
+            throw new IllegalArgumentException("Leaper moves must not be " +
+                                                "negative or empty: (" + m +
+                                                "," + n + ")");
+
+        shortLeg = Math.min( m, n );
+        longLeg = Math.max( m, n );
+
+        int[] x = { -shortLeg, shortLeg, longLeg, longLeg,
+                    shortLeg, -shortLeg, -longLeg, -longLeg };
+        int[] y = { longLeg, longLeg, shortLeg, -shortLeg,
+                    -longLeg, -longLeg, -shortLeg, shortLeg };
+
+        // Drop the moves which repeat an earlier one
+        int count = 0;
+        for( int k = 0; k < x.length; k++ ) {
+            boolean repeated = false;
+            for( int j = 0; j < count; j++ ) {
+                if( (x[j] == x[k]) && (y[j] == y[k]) )
+                    repeated = true;
+            }
+
+            if(! repeated ) {
+                x[count] = x[k];
+                y[count] = y[k];
+                count++;
+            }
+        }
+
+        xOffsets = Arrays.copyOf( x, count );
+        yOffsets = Arrays.copyOf( y, count );
+    }
+
+    /**
+     * Find a leaper by name, or by its legs written as "m,n"
+     *
+     * @param name  "knight", "camel", "zebra", "giraffe", or "m,n"
+     * @return      The leaper
+     */
+    public static Leaper forName( String name ) {
+        for( int i = 0; i < NAMES.length; i++ ) {
+            if( NAMES[i].equalsIgnoreCase(name) )
+                return NAMED[i];
+        }
+
+        int separator = name.indexOf( ',' );
+        if( separator < 0 )
+            throw new IllegalArgumentException("Unknown leaper: " + name );
+
+        try {
+            return new Leaper( Integer.parseInt(name.substring(0, separator)),
+                    Integer.parseInt(name.substring(separator + 1)) );
+        }
+        catch( NumberFormatException e ) {
+            throw new IllegalArgumentException("Unknown leaper: " + name );
+        }
+    }
+
+    /**
+     * Get the squares the leaper jumps along its shorter axis
+     *
+     * @return      The shorter leg of the move
+     */
+    public int getShortLeg() {
+        return shortLeg;
+    }
+
+    /**
+     * Get the squares the leaper jumps along its longer axis
+     *
+     * @return      The longer leg of the move
+     */
+    public int getLongLeg() {
+        return longLeg;
+    }
+
+    /**
+     * Get the number of distinct moves of the leaper
+     *
+     * @return      The number of moves, at most MoveTable.MAX_MOVES
+     */
+    public int getMoveCount() {
+        return xOffsets.length;
+    }
+
+    /**
+     * Get the x-offset of a move
+     *
+     * @param move      The move's index, below getMoveCount()
+     * @return      The change in x-coordinate
+     */
+    public int getXOffset( int move ) {
+        return xOffsets[move];
+    }
+
+    /**
+     * Get the y-offset of a move
+     *
+     * @param move      The move's index, below getMoveCount()
+     * @return      The change in y-coordinate
+     */
+    public int getYOffset( int move ) {
+        return yOffsets[move];
+    }
+
+    /**
+     * Check if every move lands on a square of the other colour.
+     *
+     * Only such leapers can tour a whole board; the others, like the camel,
+     * never leave the colour they started on.
+     *
+     * @return      true, if the legs add up to an odd number
+     */
+    public boolean changesColour() {
+        return (shortLeg + longLeg) % 2 == 1;
+    }
+
+    @Override
+    public boolean equals( Object other ) {
+        if( this == other )
+            return true;
+        else if(! (other instanceof Leaper) )
+            return false;
+
+        Leaper leaper = (Leaper) other;
+        return (shortLeg == leaper.shortLeg) && (longLeg == leaper.longLeg);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * shortLeg + longLeg;
+    }
+
+    @Override
+    public String toString() {
+        for( int i = 0; i < NAMED.length; i++ ) {
+            if( NAMED[i].equals(this) )
+                return NAMES[i];
+        }
+
+        return shortLeg + "," + longLeg;
+    }
+}
@@ -0,0 +1,145 @@
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes the moves of a Solver to a subscriber, as they are made.
+ *
+ * Moves are made with Solver.nextSquare() and handed to the subscriber's
+ * onNext() as square indices, but only as many as the subscriber has
+ * requested: a slow renderer or network writer holds the Knight-piece back
+ * rather than letting moves pile up, so the memory used stays the same
+ * whatever the size of the board. The stream completes at the first
+ * dead-end.
+ *
+ * The moves are made and delivered on the given Executor, one task at a time
+ * and never two at once, so neither the Solver nor the subscriber needs to be
+ * thread-safe; the Solver must not be moved by anything else meanwhile. A
+ * Solver's moves can only be published once, so a publisher accepts a single
+ * subscriber.
+ *
+ * @author Darren M.
+ */
+public class MovePublisher implements Flow.Publisher<Integer> {
+    private final Solver _solver;       // Makes the moves
+    private final Executor _executor;   // Runs the delivery of the moves
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+
+    /**
+     * MovePublisher publishes the moves of a Solver on an Executor.
+     *
+     * @param solver    The Solver to move, from wherever its Knight-piece is
+     * @param executor  The Executor to make and deliver the moves on
+     */
+    public MovePublisher( Solver solver, Executor executor ) {
+        _solver = solver;
+        _executor = executor;
+    }
+
+    @Override
+    public void subscribe( Flow.Subscriber<? super Integer> subscriber ) {
+        if( subscriber == null )
+            throw new NullPointerException("The subscriber is null");
+
+        MoveSubscription subscription = new MoveSubscription( subscriber );
+
+        // Later subscribers only get the error, without moving the Solver
+        // even if they request moves from within onSubscribe()
+        if( subscribed.compareAndSet(false, true) )
+            subscriber.onSubscribe( subscription );
+        else {
+            subscription.error = new IllegalStateException("The moves have " +
+                                                           "already been " +
+                                                           "published");
+            subscriber.onSubscribe( subscription );
+            subscription.request( 1 );
+        }
+    }
+
+    /**
+     * Delivers the moves to one subscriber, as they are requested.
+     *
+     * Requests add to the outstanding demand; whichever request raises it
+     * from zero hands a delivery task to the Executor, and that task keeps
+     * delivering until the demand it has seen is met.
+     */
+    private class MoveSubscription implements Flow.Subscription, Runnable {
+        private final Flow.Subscriber<? super Integer> subscriber;
+        private final AtomicLong demand = new AtomicLong(); // Moves requested
+                                                            // but not yet
+                                                            // delivered
+        private volatile Throwable error;   // Error to end the stream with
+        private volatile boolean done;      // Cancelled or ended
+
+        MoveSubscription( Flow.Subscriber<? super Integer> subscriber ) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request( long n ) {
+            if( n <= 0 ) {
+                // The delivery task reports the error, in turn with the moves
+                error = new IllegalArgumentException("Requested " + n +
+                                                     " moves; requests " +
+                                                     "must be positive");
+                n = 1;
+            }
+
+            while( true ) {
+                long current = demand.get();
+                long next = current + n;
+
+                // Demand beyond Long.MAX_VALUE is unbounded all the same
+                if( next < 0 )
+                    next = Long.MAX_VALUE;
+
+                if( demand.compareAndSet(current, next) ) {
+                    if( current == 0 )
+                        _executor.execute( this );
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public void cancel() {
+            done = true;
+        }
+
+        @Override
+        public void run() {
+            long requested = demand.get();
+            long delivered = 0;
+
+            while( true ) {
+                while( delivered < requested ) {
+                    if( done )
+                        return;
+
+                    if( error != null ) {
+                        done = true;
+                        subscriber.onError( error );
+                        return;
+                    }
+
+                    int square = _solver.nextSquare();
+                    if( square < 0 ) {
+                        done = true;
+                        subscriber.onComplete();
+                        return;
+                    }
+
+                    subscriber.onNext( square );
+                    delivered++;
+                }
+
+                // Stop once no more moves were requested meanwhile
+                requested = demand.addAndGet( -delivered );
+                delivered = 0;
+                if( requested == 0 )
+                    return;
+            }
+        }
+    }
+}
@@ -0,0 +1,481 @@
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Precomputed table of the moves a Knight-piece can make on a board.
+ *
+ * Squares are addressed by a single index (y * width + x). For every square
+ * the table keeps one byte whose bits mark which of the board's Leaper moves
+ * (the 8 Knight moves, unless the board says otherwise) stay on the board;
+ * the destination of move k is simply the square index plus getDelta(k).
+ * Walking the set bits of a mask therefore visits the destinations in the
+ * same order Knight.getMovesFromPosition has always produced them, without
+ * allocating or bounds-checking anything. Nothing past the table depends on
+ * the Leaper, so any of them is toured as fast as the Knight-piece.
+ *
+ * Tables are immutable once built, so a single instance is shared by every
+ * Knight and Solver working on a board of the same size and Leaper. The
+ * shared tables are kept within MAX_CACHED_BYTES, dropping the least recently
+ * used ones first, so a program touring boards of ever new sizes (such as
+ * the TourServer) doesn't keep every table it ever built; the most recent one
+ * is always kept, however large. A dropped table stays valid for whoever
+ * holds it, and is simply built again when next asked for.
+ *
+ * @author Darren M.
+ */
+public class MoveTable {
+    public static final int MAX_MOVES = 8;  //The max amount of moves a Leaper can make
+    public static final int MAX_BITBOARD_SQUARES = 64;  // Squares in a long
+    public static final int MAX_SHARED_POSITIONS = 1 << 16; // Squares whose
+                                                            // Positions are
+                                                            // shared
+
+    public static final long MAX_CACHED_BYTES = 64L << 20;  // Most bytes of
+                                                            // shared tables
+    private static final int POSITION_BYTES = 32;   // Bytes of a shared
+                                                    // Position and its slot
+
+    // Tables already built, keyed by their board's dimensions and Leaper,
+    // from least to most recently used; guarded by its own lock
+    private static final LinkedHashMap<Board, MoveTable> TABLES =
+            new LinkedHashMap<Board, MoveTable>( 16, 0.75f, true );
+    private static long cachedBytes;    // Bytes of the shared tables
+
+    private final int width;        // Width of the board
+    private final int height;       // Height of the board
+    private final Leaper _leaper;   // The piece whose moves are tabled
+    private final int[] deltas;     // Square-index offset of each move
+    private final byte[] masks;     // Bitmask of the on-board moves per square
+    private final byte[] degrees;   // Number of on-board moves per square
+    private final long[] attacks;   // Bitboard of each square's destinations,
+                                    // on boards of up to 64 squares
+    private Position[] positions;   // Shared Position of each square, built
+                                    // on first use
+
+    /**
+     * Build the Knight-piece's move table for a board of the given
+     * dimensions.
+     *
+     * @param width     Width of the board
+     * @param height    Height of the board
+     */
+    public MoveTable( int width, int height ) {
+        this( width, height, Leaper.KNIGHT );
+    }
+
+    /**
+     * Build the move table of a Leaper for a board of the given dimensions.
+     *
+     * @param width     Width of the board
+     * @param height    Height of the board
+     * @param leaper    The piece whose moves to table
+     */
+    public MoveTable( int width, int height, Leaper leaper ) {
+        if( (width <= 0) || (height <= 0) )
+            throw new IllegalArgumentException("Board dimensions must be " +
+                                                "positive: " + width + "x" +
+                                                height );
+        if( (long) width * height > Integer.MAX_VALUE )
+            throw new IllegalArgumentException("Board too large: " + width +
+                                                "x" + height );
+
+        this.width = width;
+        this.height = height;
+        _leaper = leaper;
+        deltas = new int[leaper.getMoveCount()];
+        masks = new byte[width * height];
+
+        for( int k = 0; k < deltas.length; k++ )
+            deltas[k] = leaper.getYOffset(k) * width + leaper.getXOffset(k);
+
+        // A move is on the board when both of its axes are; build the per-axis
+        // masks once so each square only costs a single AND
+        int[] columnMasks = new int[width];
+        int[] rowMasks = new int[height];
+        for( int k = 0; k < deltas.length; k++ ) {
+            for( int x = 0; x < width; x++ ) {
+                int xFinal = x + leaper.getXOffset(k);
+                if( (xFinal >= 0) && (xFinal < width) )
+                    columnMasks[x] |= 1 << k;
+            }
+            for( int y = 0; y < height; y++ ) {
+                int yFinal = y + leaper.getYOffset(k);
+                if( (yFinal >= 0) && (yFinal < height) )
+                    rowMasks[y] |= 1 << k;
+            }
+        }
+
+        degrees = new byte[masks.length];
+
+        int square = 0;
+        for( int y = 0; y < height; y++ ) {
+            int rowMask = rowMasks[y];
+            for( int x = 0; x < width; x++ ) {
+                int mask = rowMask & columnMasks[x];
+
+                masks[square] = (byte) mask;
+                degrees[square++] = (byte) Integer.bitCount( mask );
+            }
+        }
+
+        // Small boards also get every square's destinations as one long
+        if( masks.length > MAX_BITBOARD_SQUARES ) {
+            attacks = null;
+            return;
+        }
+
+        attacks = new long[masks.length];
+        for( square = 0; square < masks.length; square++ ) {
+            for( int mask = masks[square] & 0xFF; mask != 0;
+                    mask &= mask - 1 )
+                attacks[square] |= 1L << (square +
+                        deltas[Integer.numberOfTrailingZeros(mask)]);
+        }
+    }
+
+    /**
+     * Obtain the shared Knight-piece move table for a board of the given
+     * dimensions, building it on first use.
+     *
+     * @param width     Width of the board
+     * @param height    Height of the board
+     * @return      The move table for the board
+     */
+    public static MoveTable forBoard( int width, int height ) {
+        return forBoard( new Board(width, height) );
+    }
+
+    /**
+     * Obtain the shared move table for a board's dimensions and Leaper,
+     * building it on first use.
+     *
+     * @param board     The board
+     * @return      The move table for the board
+     */
+    public static MoveTable forBoard( Board board ) {
+        synchronized( TABLES ) {
+            MoveTable table = TABLES.get( board );
+            if( table != null )
+                return table;
+        }
+
+        // Built outside the lock, so other boards' lookups don't wait on it
+        MoveTable table = new MoveTable( board.getWidth(), board.getHeight(),
+                                         board.getLeaper() );
+
+        synchronized( TABLES ) {
+            // Another thread may have built the same table in the meantime
+            MoveTable existing = TABLES.get( board );
+            if( existing != null )
+                return existing;
+
+            TABLES.put( board, table );
+            cachedBytes += table.getSize();
+
+            Iterator<Map.Entry<Board, MoveTable>> eldest =
+                    TABLES.entrySet().iterator();
+            while( (cachedBytes > MAX_CACHED_BYTES) && (TABLES.size() > 1) ) {
+                MoveTable evicted = eldest.next().getValue();
+
+                eldest.remove();
+                cachedBytes -= evicted.getSize();
+            }
+        }
+
+        return table;
+    }
+
+    /**
+     * Estimate the memory the table holds, counting the Positions it may
+     * share as though they were all built.
+     *
+     * @return      The table's size in bytes
+     */
+    private long getSize() {
+        long size = (long) masks.length + degrees.length;
+
+        if( attacks != null )
+            size += 8L * attacks.length;
+        if( masks.length <= MAX_SHARED_POSITIONS )
+            size += (long) POSITION_BYTES * masks.length;
+
+        return size;
+    }
+
+    /**
+     * Get the width of the board this table describes
+     *
+     * @return      The board width
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Get the height of the board this table describes
+     *
+     * @return      The board height
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Get the piece whose moves this table describes
+     *
+     * @return      The board's Leaper
+     */
+    public Leaper getLeaper() {
+        return _leaper;
+    }
+
+    /**
+     * Get the number of distinct moves of the board's Leaper
+     *
+     * @return      The number of moves, at most MAX_MOVES
+     */
+    public int getMoveCount() {
+        return deltas.length;
+    }
+
+    /**
+     * Get the number of squares on the board
+     *
+     * @return      The number of squares
+     */
+    public int getSquareCount() {
+        return masks.length;
+    }
+
+    /**
+     * Convert a pair of coordinates into a square index.
+     *
+     * @param xCoordinate   The x-coordinate of the square
+     * @param yCoordinate   The y-coordinate of the square
+     * @return      The square's index
+     */
+    public int getSquare( int xCoordinate, int yCoordinate ) {
+        return yCoordinate * width + xCoordinate;
+    }
+
+    /**
+     * Get the x-coordinate of a square index
+     *
+     * @param square    The square's index
+     * @return      The x-coordinate of the square
+     */
+    public int getX( int square ) {
+        return square % width;
+    }
+
+    /**
+     * Get the y-coordinate of a square index
+     *
+     * @param square    The square's index
+     * @return      The y-coordinate of the square
+     */
+    public int getY( int square ) {
+        return square / width;
+    }
+
+    /**
+     * Get the Position of a square.
+     *
+     * Boards of up to MAX_SHARED_POSITIONS squares keep a single Position
+     * per square, built the first time it is asked for, so asking again
+     * allocates nothing; larger boards get a new Position every time.
+     *
+     * @param square    The square's index
+     * @return      The Position of the square
+     */
+    public Position getPosition( int square ) {
+        if( masks.length > MAX_SHARED_POSITIONS )
+            return new Position( getX(square), getY(square) );
+
+        // Threads racing here may each build the array or a Position; any
+        // of them will do, as Positions are immutable
+        Position[] shared = positions;
+        if( shared == null )
+            positions = shared = new Position[masks.length];
+
+        Position result = shared[square];
+        if( result == null )
+            shared[square] = result = new Position( getX(square), getY(square) );
+
+        return result;
+    }
+
+    /**
+     * Get the Position of a pair of coordinates, shared as by
+     * getPosition(square) when they lie on the board.
+     *
+     * @param xCoordinate   The x-coordinate of the position
+     * @param yCoordinate   The y-coordinate of the position
+     * @return      The Position of the coordinates
+     */
+    public Position getPosition( int xCoordinate, int yCoordinate ) {
+        if(! contains(xCoordinate, yCoordinate) )
+            return new Position( xCoordinate, yCoordinate );
+
+        return getPosition( getSquare(xCoordinate, yCoordinate) );
+    }
+
+    /**
+     * Check if a pair of coordinates lies on the board
+     *
+     * @param xCoordinate   The x-coordinate to check
+     * @param yCoordinate   The y-coordinate to check
+     * @return      true, if the coordinates are on the board; false otherwise
+     */
+    public boolean contains( int xCoordinate, int yCoordinate ) {
+        return (xCoordinate >= 0) && (yCoordinate >= 0) &&
+                (xCoordinate < width) && (yCoordinate < height);
+    }
+
+    /**
+     * Get the moves which stay on the board from the given square.
+     *
+     * Bit k of the result is set when move k is available; the destination of
+     * that move is square + getDelta(k).
+     *
+     * @param square    The square the Knight-piece moves from
+     * @return      Bitmask of the available moves
+     */
+    public int getMoveMask( int square ) {
+        return masks[square] & 0xFF;
+    }
+
+    /**
+     * Get the square-index offset of a move
+     *
+     * @param move      Index of the move, between 0 and getMoveCount() - 1
+     * @return      The offset to add to a square index to perform the move
+     */
+    public int getDelta( int move ) {
+        return deltas[move];
+    }
+
+    /**
+     * Get the x-offset of a move
+     *
+     * @param move      Index of the move, between 0 and getMoveCount() - 1
+     * @return      The change in x-coordinate performed by the move
+     */
+    public int getXOffset( int move ) {
+        return _leaper.getXOffset( move );
+    }
+
+    /**
+     * Get the y-offset of a move
+     *
+     * @param move      Index of the move, between 0 and getMoveCount() - 1
+     * @return      The change in y-coordinate performed by the move
+     */
+    public int getYOffset( int move ) {
+        return _leaper.getYOffset( move );
+    }
+
+    /**
+     * Get the number of moves which stay on the board from the given square
+     *
+     * @param square    The square the Knight-piece moves from
+     * @return      The number of available moves
+     */
+    public int getDegree( int square ) {
+        return degrees[square];
+    }
+
+    /**
+     * Check if the board is small enough for getAttacks()
+     *
+     * @return      true, if every square fits in the bits of a long
+     */
+    public boolean hasBitboards() {
+        return attacks != null;
+    }
+
+    /**
+     * Get the destinations of the moves from a square as a bitboard.
+     *
+     * Bit d of the result is set when square d can be reached with a single
+     * move. Only available when hasBitboards() holds.
+     *
+     * @param square    The square the Knight-piece moves from
+     * @return      Bitboard of the square's destinations
+     */
+    public long getAttacks( int square ) {
+        if( attacks == null )
+            throw new IllegalStateException("No bitboards on a " + width +
+                                             "x" + height + " board");
+
+        return attacks[square];
+    }
+
+    /**
+     * Copy the destination bitboards of every square, so that a search can
+     * read them from an array of its own.
+     *
+     * @return      A new array holding getAttacks() of every square
+     */
+    public long[] copyAttacks() {
+        if( attacks == null )
+            throw new IllegalStateException("No bitboards on a " + width +
+                                             "x" + height + " board");
+
+        return attacks.clone();
+    }
+
+    /**
+     * Copy the number of on-board moves of every square, as a starting point
+     * for counters which are updated as squares get visited.
+     *
+     * @return      A new array holding getDegree() of every square
+     */
+    public byte[] copyDegrees() {
+        return degrees.clone();
+    }
+
+    /**
+     * Copy the number of on-board moves of every square into an existing
+     * array, as copyDegrees() does.
+     *
+     * @param destination   Array of getSquareCount() entries to fill
+     */
+    public void copyDegrees( byte[] destination ) {
+        System.arraycopy( degrees, 0, destination, 0, degrees.length );
+    }
+
+    /**
+     * Check if a single move leads from one square to the other.
+     *
+     * @param from      The square the Knight-piece moves from
+     * @param to        The square the Knight-piece moves to
+     * @return      true, if the move is valid; false otherwise
+     */
+    public boolean isMove( int from, int to ) {
+        for( int mask = getMoveMask(from); mask != 0; mask &= mask - 1 ) {
+            if( from + deltas[Integer.numberOfTrailingZeros(mask)] == to )
+                return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Collect the destinations reachable from a square.
+     *
+     * @param square        The square the Knight-piece moves from
+     * @param destinations  Array of at least MAX_MOVES entries to fill
+     * @return      The number of destinations written
+     */
+    public int getDestinations( int square, int[] destinations ) {
+        int count = 0;
+
+        for( int mask = getMoveMask(square); mask != 0; mask &= mask - 1 )
+            destinations[count++] =
+                    square + deltas[Integer.numberOfTrailingZeros(mask)];
+
+        return count;
+    }
+}
@@ -1,4 +1,19 @@
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PrimitiveIterator;
 import java.util.Scanner;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import javax.management.JMException;
 
 /**
  * Plays the "Lonely Knight-piece" puzzle solver.
@@ -12,20 +27,189 @@ import java.util.Scanner;
  */
 public class Play {
     private static final int INPUT_OFFSET = 1;  //Offset for 0-index counting
+    private static final int CLOSED_BUDGET = 100;   // Default moves per square
+                                                    // to close a tour with
+    private static final int PORTFOLIO_BUDGET = 100;    // Default moves per
+                                                        // square per variant
 
     public static void main(String[] args) {
         Scanner input = new Scanner(System.in); // Takes user input
-        Solver solver = new Solver( 0, 0 );     // Moves the Knight on the board
+        Board board = Board.STANDARD;           // Dimensions of the board
+        Leaper leaper = Leaper.KNIGHT;          // The piece to tour with
+        boolean offHeap = false;                // Keep visits off the heap
+        TieBreak tieBreak = TieBreak.FIRST;     // How equal moves are chosen
+        long budget = -1;                       // Moves to solve with, if any
+        boolean blocks = false;                 // Solve block by block
+        boolean closed = false;                 // Solve for a closed tour
+        boolean batch = false;                  // Solve from every square
+        long variants = -1;                     // Solvers to race, if any
+        String count = null;                    // Kind of tours to count
+        TourWriter.Format format = null;        // Headless output, if any
+        boolean validFormat = true;             // Flag if the format parsed
+        String outputFile = null;               // Where to write it, if not
+                                                // to standard output
+        String saveFile = null;                 // Where to keep the solved
+                                                // tour, if anywhere
+        String loadFile = null;                 // Saved tour to show instead
+                                                // of solving, if any
+        long metricsPeriod = -1;                // Seconds between metric
+                                                // dumps, if collected
+        boolean verify = false;                 // Check the finished tour
+        String checkpointFile = null;           // Where to log the search,
+                                                // if anywhere
+        String resumeFile = null;               // Logged search to carry on,
+                                                // if any
+        boolean ansi = false;                   // Redraw only what changes
+        long rate = -1;                         // Moves a second to play the
+                                                // tour at, if not stepped
+        long fps = BoardRenderer.DEFAULT_FPS;   // Most frames drawn a second
+        int[] view = { BoardRenderer.DEFAULT_COLUMNS,   // Size of the
+                       BoardRenderer.DEFAULT_LINES };   // terminal
+        List<String> positional = new ArrayList<String>();
         int numberOfMoves = 0;                  // Number of moves made
         boolean hasNextMove = true;             // Flag if another move exists
 
+        // Pick out the options; anything else is a starting coordinate
+        for( int i = 0; i < args.length; i++ ) {
+            if( args[i].equals("-size") && (i + 1 < args.length) )
+                board = parseBoard( args[++i] );
+            else if( args[i].equals("-leaper") && (i + 1 < args.length) )
+                leaper = parseLeaper( args[++i] );
+            else if( args[i].equals("-offheap") )
+                offHeap = true;
+            else if( args[i].equals("-tiebreak") && (i + 1 < args.length) )
+                tieBreak = parseTieBreak( args[++i] );
+            else if( args[i].equals("-solve") && (i + 1 < args.length) )
+                budget = parseCount( args[++i] );
+            else if( args[i].equals("-blocks") )
+                blocks = true;
+            else if( args[i].equals("-closed") )
+                closed = true;
+            else if( args[i].equals("-batch") )
+                batch = true;
+            else if( args[i].equals("-portfolio") && (i + 1 < args.length) )
+                variants = parseCount( args[++i] );
+            else if( args[i].equals("-count") && (i + 1 < args.length) )
+                count = args[++i];
+            else if( args[i].equals("-format") && (i + 1 < args.length) ) {
+                format = parseFormat( args[++i] );
+                validFormat = (format != null);
+            }
+            else if( args[i].equals("-out") && (i + 1 < args.length) )
+                outputFile = args[++i];
+            else if( args[i].equals("-save") && (i + 1 < args.length) )
+                saveFile = args[++i];
+            else if( args[i].equals("-load") && (i + 1 < args.length) )
+                loadFile = args[++i];
+            else if( args[i].equals("-metrics") && (i + 1 < args.length) )
+                metricsPeriod = parseCount( args[++i] );
+            else if( args[i].equals("-verify") )
+                verify = true;
+            else if( args[i].equals("-checkpoint") && (i + 1 < args.length) )
+                checkpointFile = args[++i];
+            else if( args[i].equals("-resume") && (i + 1 < args.length) )
+                resumeFile = args[++i];
+            else if( args[i].equals("-ansi") )
+                ansi = true;
+            else if( args[i].equals("-animate") && (i + 1 < args.length) ) {
+                rate = parseCount( args[++i] );
+                ansi = true;
+            }
+            else if( args[i].equals("-fps") && (i + 1 < args.length) )
+                fps = parseCount( args[++i] );
+            else if( args[i].equals("-view") && (i + 1 < args.length) )
+                view = parseView( args[++i] );
+            else
+                positional.add( args[i] );
+        }
+
+        if( (board != null) && (leaper != null) )
+            board = new Board( board.getWidth(), board.getHeight(), leaper );
+
+        // Wrong amount of arguments; print usage and break
+        if( (board == null) || (leaper == null) || (tieBreak == null) ||
+                (budget < -1) ||
+                (! validFormat) || ((outputFile != null) && (format == null)) ||
+                (metricsPeriod < -1) ||
+                (rate == 0) || (rate < -1) || (fps <= 0) ||
+                (fps > Integer.MAX_VALUE) || (view == null) ||
+                ((positional.size() != 0) && (positional.size() != 2)) ||
+                ((loadFile != null) && (batch || (saveFile != null))) ||
+                (closed && (blocks || batch)) ||
+                (((checkpointFile != null) || (resumeFile != null)) &&
+                 (closed || blocks || batch || (loadFile != null) ||
+                  (count != null))) ||
+                ((checkpointFile != null) && (resumeFile != null)) ||
+                ((checkpointFile != null) && (tieBreak == TieBreak.RANDOM)) ||
+                (variants == 0) || (variants < -1) ||
+                (variants > Integer.MAX_VALUE) ||
+                ((variants > 0) && (closed || blocks || batch ||
+                                    (loadFile != null) || (count != null) ||
+                                    (checkpointFile != null) ||
+                                    (resumeFile != null))) ||
+                ((count != null) && ((! count.equals("open") &&
+                                      ! count.equals("closed")) ||
+                                     ! BitboardSolver.fits(board))) ) {
+            printUsage();
+            return;
+        }
+
+        // Switch the metrics on before any solver gets to look at them
+        if( metricsPeriod >= 0 )
+            startMetrics( metricsPeriod );
+
+        // Solve from every starting square and summarize the results
+        if( batch ) {
+            BatchSolver batchSolver = new BatchSolver( board, tieBreak,
+                    (budget >= 0) ? budget : board.getSquareCount() );
+
+            batchSolver.solveAll();
+            batchSolver.printSummary( System.out );
+            return;
+        }
+
+        // Show a saved tour straight from its file, without solving it again
+        if( loadFile != null ) {
+            TourFile tour = null;
+
+            try {
+                tour = TourFile.open( new File(loadFile) );
+            }
+            catch( IOException e ) {
+                System.err.println("Could not load the tour: " +
+                                    e.getMessage() );
+                return;
+            }
+
+            showTour( tour.getBoard(), tour.getVisitBoard(),
+                      tour.isComplete(), format, outputFile, verify );
+            return;
+        }
+
+        // Carry on a logged search, on the board and from the square it
+        // was started on
+        if( resumeFile != null ) {
+            resumeTour( new File(resumeFile), offHeap, budget, format,
+                        outputFile, verify );
+            return;
+        }
+
+        int startingX = 0;                      // Knight's starting column
+        int startingY = 0;                      // Knight's starting row
+
         // Change the starting location of the Knight-peice
-        if( args.length == 2 ) {
+        if( positional.size() == 2 ) {
             int xPosition = 0;
             int yPosition = 0;
 
-            xPosition = (new Integer(args[0]));
-            yPosition = (new Integer(args[1]));
+            try {
+                xPosition = Integer.parseInt( positional.get(0) );
+                yPosition = Integer.parseInt( positional.get(1) );
+            }
+            catch( NumberFormatException e ) {
+                printUsage();
+                return;
+            }
 
             // Positions are non-negative
             if( xPosition < 0 )
@@ -42,25 +226,142 @@ public class Play {
             /* Positions greater than the board dimensions scaled down to the
              * board's highest dimensions
              */
-            if( xPosition > Constants.BOARD_WIDTH )
-                xPosition = Constants.BOARD_WIDTH - INPUT_OFFSET;
-            if( yPosition > Constants.BOARD_HEIGHT )
-                yPosition = Constants.BOARD_HEIGHT - INPUT_OFFSET;
+            if( xPosition >= board.getWidth() )
+                xPosition = board.getWidth() - INPUT_OFFSET;
+            if( yPosition >= board.getHeight() )
+                yPosition = board.getHeight() - INPUT_OFFSET;
 
-            System.out.println("Custom starting location:  " + "(" +
-                                xPosition + "," + yPosition + ")" );
-            solver = new Solver(xPosition, yPosition);
+            // Keep headless output clean of anything but the tour
+            PrintStream console = (format == null) ? System.out : System.err;
+            console.println("Custom starting location:  " + "(" +
+                            xPosition + "," + yPosition + ")" );
+            startingX = xPosition;
+            startingY = yPosition;
         }
-        // Wrong amount of arguments; print usage and break
-        else if (args.length != 0 ) {
-            System.out.println("usage:        java Play");
-            System.out.println("              java Play starting_x_position " +
-                                "starting_y_position");
+
+        // Count every tour instead of finding one
+        if( count != null ) {
+            long tours = new TourEnumerator( board ).count( startingX,
+                    startingY, count.equals("closed") );
+
+            System.out.println( tours + " " + count + " tours");
+            return;
+        }
+
+        // Moves the Knight on the board
+        VisitBoard visits = offHeap ?
+                new DirectVisitBoard( board.getSquareCount() ) :
+                new ArrayVisitBoard( board.getSquareCount() );
+
+        boolean complete = false;               // Flag if the tour is done
+        Solver solver = null;                   // Steps through the moves
+
+        // Split the board into blocks and solve them in parallel...
+        if( blocks ) {
+            complete = new BlockSolver( board, visits, startingX,
+                                        startingY ).solve();
+        }
+        // ...or race differently tie-broken Solvers for the tour...
+        else if( variants > 0 ) {
+            PortfolioSolver portfolio = new PortfolioSolver( board, visits,
+                    startingX, startingY, (int) variants );
+
+            complete = portfolio.solve( (budget >= 0) ? budget :
+                    (long) PORTFOLIO_BUDGET * board.getSquareCount() );
+            if( complete ) {
+                PrintStream console = (format == null) ?
+                        System.out : System.err;
+                console.println("Won by:  " + portfolio.getWinner() );
+            }
+        }
+        // ...or copy a closed tour shipped with the program...
+        else if( closed && TourLibrary.copyTour(board, visits, startingX,
+                                                startingY) ) {
+            complete = true;
+        }
+        // ...or run the whole tour up front, without a console...
+        else if( (budget >= 0) || (format != null) || (saveFile != null) ||
+                    closed || verify || (checkpointFile != null) ) {
+            solver = new Solver( board, visits, startingX, startingY );
+            solver.setTieBreak( tieBreak );
+
+            if( closed ) {
+                complete = solver.solveClosed( (budget >= 0) ? budget :
+                        (long) CLOSED_BUDGET * board.getSquareCount() );
+            }
+            else if( checkpointFile != null ) {
+                SolverCheckpoint checkpoint = new SolverCheckpoint(
+                        new File(checkpointFile),
+                        SolverCheckpoint.DEFAULT_PERIOD );
+
+                solver.setCheckpoint( checkpoint );
+                complete = solver.solve(
+                        (budget >= 0) ? budget : board.getSquareCount() );
+                if(! closeCheckpoint(checkpoint) )
+                    return;
+            }
+            else {
+                complete = solver.solve(
+                        (budget >= 0) ? budget : board.getSquareCount() );
+            }
+        }
+        // ...or step through the tour one move at a time
+        else {
+            solver = new Solver( board, visits, startingX, startingY );
+            solver.setTieBreak( tieBreak );
+        }
+
+        // Keep the solved tour for later runs
+        if( saveFile != null ) {
+            try {
+                TourFile.write( new File(saveFile), board, visits, startingX,
+                                startingY, complete );
+            }
+            catch( IOException e ) {
+                System.err.println("Could not save the tour: " +
+                                    e.getMessage() );
+                return;
+            }
+        }
+
+        // Only show where the tour ended
+        if( (solver == null) || (budget >= 0) || (format != null) ||
+                (saveFile != null) || closed || verify ||
+                (checkpointFile != null) ) {
+            showTour( board, visits, complete, format, outputFile, verify );
+            return;
+        }
+
+        PrimitiveIterator.OfInt moves = solver.squares();
+
+        // Redraw only the squares each move changes, on an ANSI terminal
+        if( ansi ) {
+            int start = board.getSquare( startingX, startingY );
+
+            try {
+                BoardRenderer renderer = new BoardRenderer( board,
+                        solver.getVisitBoard(), new FileOutputStream(
+                                FileDescriptor.out), (int) fps, view[0],
+                        view[1] );
+
+                renderer.draw( start, 0 );
+                if( rate > 0 )
+                    animateTour( renderer, moves, rate );
+                else
+                    stepTour( renderer, moves, input );
+            }
+            catch( IllegalArgumentException e ) {
+                System.err.println( e.getMessage() );
+            }
+            catch( IOException e ) {
+                System.err.println("Could not draw the board: " +
+                                    e.getMessage() );
+            }
             return;
         }
 
         // Print the intial board
-        printBoard( solver.getBoard(), numberOfMoves++ );
+        printBoard( board, solver.getVisitBoard(), numberOfMoves++ );
 
         while( hasNextMove ) {
             System.out.print("Hit enter to continue ");
@@ -78,8 +379,9 @@ public class Play {
             }
 
             // Make the next move and verify it was made; break otherwise
-            Position nextMove = solver.nextMove();
-            if( nextMove == null ) {
+            if( moves.hasNext() )
+                moves.nextInt();
+            else {
                 hasNextMove = false;
                 System.out.println("Out of Moves!");
 
@@ -87,7 +389,449 @@ public class Play {
                 numberOfMoves--;
             }
 
-            printBoard( solver.getBoard(), numberOfMoves++ );
+            printBoard( board, solver.getVisitBoard(), numberOfMoves++ );
+        }
+    }
+
+    /**
+     * Print how the program is invoked.
+     */
+    private static void printUsage() {
+        System.out.println("usage:        java Play [options]");
+        System.out.println("              java Play [options] " +
+                            "starting_x_position starting_y_position");
+        System.out.println();
+        System.out.println("options:      -size WIDTHxHEIGHT    " +
+                            "tour a board of the given size");
+        System.out.println("              -leaper NAME          " +
+                            "tour with a knight, camel, zebra, giraffe,");
+        System.out.println("                                    " +
+                            "or any M,N-leaper");
+        System.out.println("              -offheap              " +
+                            "keep the board outside of the Java heap");
+        System.out.println("              -tiebreak RULE        " +
+                            "first, center, lookahead or random");
+        System.out.println("              -solve BUDGET         " +
+                            "solve the tour up front, backtracking at most");
+        System.out.println("                                    " +
+                            "BUDGET moves, and print the final board");
+        System.out.println("              -blocks               " +
+                            "solve the tour block by block, in parallel,");
+        System.out.println("                                    " +
+                            "and print the final board");
+        System.out.println("              -closed               " +
+                            "solve the tour up front so that it ends a");
+        System.out.println("                                    " +
+                            "move away from the start; BUDGET, if given,");
+        System.out.println("                                    " +
+                            "also bounds the repairs");
+        System.out.println("              -batch                " +
+                            "solve from every starting square, in");
+        System.out.println("                                    " +
+                            "parallel, and print a summary");
+        System.out.println("              -portfolio VARIANTS   " +
+                            "race VARIANTS differently tie-broken solvers");
+        System.out.println("                                    " +
+                            "for the tour, each with BUDGET moves, and");
+        System.out.println("                                    " +
+                            "print the final board");
+        System.out.println("              -count open|closed    " +
+                            "count every open or closed tour, on boards");
+        System.out.println("                                    " +
+                            "of at most 64 squares");
+        System.out.println("              -format FORMAT        " +
+                            "run without a console and write the finished");
+        System.out.println("                                    " +
+                            "tour as moves, board or binary");
+        System.out.println("              -out FILE             " +
+                            "write the tour to FILE instead of standard");
+        System.out.println("                                    " +
+                            "output");
+        System.out.println("              -verify               " +
+                            "check the finished tour, visit by visit");
+        System.out.println("              -metrics SECONDS      " +
+                            "count the solvers' work, publish it over JMX");
+        System.out.println("                                    " +
+                            "and print it every SECONDS (0 for only on");
+        System.out.println("                                    " +
+                            "exit) to standard error");
+        System.out.println("              -ansi                 " +
+                            "step through the tour on an ANSI terminal,");
+        System.out.println("                                    " +
+                            "redrawing only the squares that change");
+        System.out.println("              -animate RATE         " +
+                            "play the tour by itself, at RATE moves a");
+        System.out.println("                                    " +
+                            "second, on an ANSI terminal");
+        System.out.println("              -fps FPS              " +
+                            "draw at most FPS frames a second (" +
+                            BoardRenderer.DEFAULT_FPS + ")");
+        System.out.println("              -view COLUMNSxLINES   " +
+                            "size of the terminal, scrolling larger boards");
+        System.out.println("                                    " +
+                            "(" + BoardRenderer.DEFAULT_COLUMNS + "x" +
+                            BoardRenderer.DEFAULT_LINES + ")");
+        System.out.println("              -checkpoint FILE      " +
+                            "solve the tour up front, logging the search");
+        System.out.println("                                    " +
+                            "to FILE as it goes");
+        System.out.println("              -resume FILE          " +
+                            "carry on the search logged in FILE; BUDGET,");
+        System.out.println("                                    " +
+                            "if given, is the first run's");
+        System.out.println("              -save FILE            " +
+                            "solve the tour up front and keep it in FILE");
+        System.out.println("              -load FILE            " +
+                            "show the tour kept in FILE instead of solving");
+    }
+
+    /**
+     * Step through the tour on a renderer, a move each time the user hits
+     * enter.
+     *
+     * @param renderer      Draws the board
+     * @param moves         The tour's remaining moves
+     * @param input         The user's input
+     * @throws IOException  If the terminal can't be written to
+     */
+    private static void stepTour( BoardRenderer renderer,
+                                  PrimitiveIterator.OfInt moves,
+                                  Scanner input ) throws IOException {
+        while( moves.hasNext() ) {
+            renderer.prompt("Hit enter to continue (^D to exit): ");
+
+            // Kick out of the program upon receiving EOF
+            if(! input.hasNextLine() ) {
+                renderer.prompt("\n");
+                return;
+            }
+
+            input.nextLine();
+            renderer.move( moves.nextInt() );
+        }
+
+        renderer.prompt("Out of Moves!\n");
+    }
+
+    /**
+     * Play the whole tour on a renderer, at the given rate: each frame draws
+     * the moves which have fallen due since the last one, and frames with no
+     * move due are skipped.
+     *
+     * @param renderer      Draws the board, no faster than its frame rate
+     * @param moves         The tour's remaining moves
+     * @param rate          Moves a second
+     * @throws IOException  If the terminal can't be written to
+     */
+    private static void animateTour( BoardRenderer renderer,
+                                     PrimitiveIterator.OfInt moves,
+                                     long rate ) throws IOException {
+        long start = System.nanoTime();
+        long made = 0;      // Moves drawn so far
+
+        while( moves.hasNext() ) {
+            long due = (long) ((System.nanoTime() - start) / 1e9 * rate);
+
+            // Sleep until the next move is due, rather than draw nothing
+            if( due <= made ) {
+                LockSupport.parkNanos( start + (long) ((made + 1) * 1e9 / rate)
+                                       - System.nanoTime() );
+                continue;
+            }
+
+            for( ; (made < due) && moves.hasNext(); made++ )
+                renderer.move( moves.nextInt() );
+
+            renderer.endFrame();
+        }
+
+        renderer.prompt("Out of Moves!\n");
+    }
+
+    /**
+     * Collect the solvers' metrics, publish them over JMX and print them to
+     * standard error periodically and when the program exits.
+     *
+     * @param period    Seconds between the periodic dumps, or 0 to only
+     *                  print them on exit
+     */
+    private static void startMetrics( long period ) {
+        System.setProperty( "knight.metrics", "true" );
+
+        try {
+            SolverMetrics.register();
+        }
+        catch( JMException e ) {
+            System.err.println("Could not publish the metrics: " +
+                                e.getMessage() );
+        }
+
+        Runnable dump = new Runnable() {
+            @Override
+            public void run() {
+                SolverMetrics.dump( System.err );
+            }
+        };
+
+        if( period > 0 ) {
+            ScheduledExecutorService timer =
+                    Executors.newSingleThreadScheduledExecutor(
+                            new ThreadFactory() {
+                @Override
+                public Thread newThread( Runnable task ) {
+                    // Never keep the program alive just to print metrics
+                    Thread thread = new Thread( task, "metrics" );
+                    thread.setDaemon( true );
+                    return thread;
+                }
+            } );
+            timer.scheduleAtFixedRate( dump, period, period,
+                                       TimeUnit.SECONDS );
+        }
+
+        Runtime.getRuntime().addShutdownHook( new Thread(dump) );
+    }
+
+    /**
+     * Carry on a search logged by "-checkpoint", then show the tour as
+     * showTour() does.
+     *
+     * @param file          The checkpoint log
+     * @param offHeap       Whether to keep the visits outside of the Java heap
+     * @param budget        The whole search's budget, or -1 for one pass
+     * @param format        The layout to write the tour in, or null
+     * @param outputFile    The file to write to, or null for standard output
+     * @param verify        Whether to check the tour once it is shown
+     */
+    private static void resumeTour( File file, boolean offHeap, long budget,
+                                    TourWriter.Format format,
+                                    String outputFile, boolean verify ) {
+        Solver solver = null;
+
+        try {
+            solver = SolverCheckpoint.resume( file,
+                    SolverCheckpoint.DEFAULT_PERIOD, offHeap );
+        }
+        catch( IOException e ) {
+            System.err.println("Could not resume the search: " +
+                                e.getMessage() );
+            return;
+        }
+
+        Board board = solver.getGeometry();
+        long limit = (budget >= 0) ? budget : board.getSquareCount();
+        boolean complete = solver.solve(
+                Math.max(0, limit - solver.getBudgetSpent()) );
+
+        if( closeCheckpoint(solver.getCheckpoint()) )
+            showTour( board, solver.getVisitBoard(), complete, format,
+                      outputFile, verify );
+    }
+
+    /**
+     * Wait for a checkpoint log to be written out.
+     *
+     * @param checkpoint    The log
+     * @return      true, if every checkpoint was written
+     */
+    private static boolean closeCheckpoint( SolverCheckpoint checkpoint ) {
+        try {
+            checkpoint.close();
+            return true;
+        }
+        catch( IOException e ) {
+            System.err.println("Could not keep the checkpoint: " +
+                                e.getMessage() );
+            return false;
+        }
+    }
+
+    /**
+     * Show a finished tour: stream it in the given format, or print the final
+     * board when there is no format.
+     *
+     * @param board         Geometry of the toured board
+     * @param visits        The move number of each square
+     * @param complete      Whether the tour visits every square
+     * @param format        The layout to write the tour in, or null
+     * @param outputFile    The file to write to, or null for standard output
+     * @param verify        Whether to check the tour once it is shown
+     */
+    private static void showTour( Board board, VisitBoard visits,
+                                  boolean complete, TourWriter.Format format,
+                                  String outputFile, boolean verify ) {
+        // Stream the finished tour instead of printing boards
+        if( format != null ) {
+            try {
+                writeTour( board, visits, format, outputFile );
+            }
+            catch( IOException e ) {
+                System.err.println("Could not write the tour: " +
+                                    e.getMessage() );
+                return;
+            }
+
+            System.err.println( complete ? "Tour complete!" :
+                                "No tour found" );
+            if( verify )
+                verifyTour( board, visits, System.err );
+            return;
+        }
+
+        // The Knight-piece rests on the highest move number
+        int moveNumber = 0;
+        for( int square = 0; square < visits.getSquareCount(); square++ )
+            moveNumber = Math.max( moveNumber, visits.get(square) );
+
+        printBoard( board, visits, moveNumber );
+        System.out.println( complete ? "Tour complete!" : "No tour found" );
+        if( verify )
+            verifyTour( board, visits, System.out );
+    }
+
+    /**
+     * Check a finished tour with a TourVerifier and report the outcome.
+     *
+     * @param board     Geometry of the toured board
+     * @param visits    The move number of each square
+     * @param out       The stream to report on
+     */
+    private static void verifyTour( Board board, VisitBoard visits,
+                                    PrintStream out ) {
+        TourVerifier verifier = new TourVerifier( board, visits );
+        long start = System.nanoTime();
+        boolean valid = verifier.verify();
+        long millis = (System.nanoTime() - start) / 1000000;
+
+        if( valid )
+            out.println("Verified " + (verifier.isClosed() ? "a closed" :
+                        "an open") + " tour in " + millis + "ms");
+        else
+            out.println("Invalid tour: " + verifier.getProblem() );
+    }
+
+    /**
+     * Write a finished tour through a TourWriter.
+     *
+     * @param board         Geometry of the toured board
+     * @param visits        The move number of each square
+     * @param format        The layout to write the tour in
+     * @param outputFile    The file to write to, or null for standard output
+     * @throws IOException  If the tour couldn't be written
+     */
+    private static void writeTour( Board board, VisitBoard visits,
+                                   TourWriter.Format format,
+                                   String outputFile ) throws IOException {
+        OutputStream out = (outputFile == null) ? System.out :
+                            new FileOutputStream( outputFile );
+        TourWriter writer = new TourWriter( out );
+
+        try {
+            writer.writeTour( board, visits, format );
+        }
+        finally {
+            // Leave standard output open for anything printed afterwards
+            if( outputFile == null )
+                writer.flush();
+            else
+                writer.close();
+        }
+    }
+
+    /**
+     * Parse the name of an output format (e.g., "moves").
+     *
+     * @param name      The name of the format to parse
+     * @return      The parsed format, or null if there is no such format
+     */
+    private static TourWriter.Format parseFormat( String name ) {
+        try {
+            return TourWriter.Format.valueOf( name.toUpperCase() );
+        }
+        catch( IllegalArgumentException e ) {
+            return null;
+        }
+    }
+
+    /**
+     * Parse the name of a tie-breaking rule (e.g., "center").
+     *
+     * @param name      The name of the rule to parse
+     * @return      The parsed rule, or null if there is no such rule
+     */
+    private static TieBreak parseTieBreak( String name ) {
+        try {
+            return TieBreak.valueOf( name.toUpperCase() );
+        }
+        catch( IllegalArgumentException e ) {
+            return null;
+        }
+    }
+
+    /**
+     * Parse a non-negative count (e.g., a budget of moves).
+     *
+     * @param count     The count to parse
+     * @return      The parsed count, or -2 if it is malformed or negative
+     */
+    private static long parseCount( String count ) {
+        try {
+            long result = Long.parseLong( count );
+            return (result < 0) ? -2 : result;
+        }
+        catch( NumberFormatException e ) {
+            return -2;
+        }
+    }
+
+    /**
+     * Parse a terminal size of the form "COLUMNSxLINES" (e.g., "132x50").
+     *
+     * @param size      The terminal size to parse
+     * @return      The columns and lines, or null if the size is malformed
+     */
+    private static int[] parseView( String size ) {
+        int separator = size.indexOf('x');
+
+        try {
+            return new int[] { Integer.parseInt(size.substring(0, separator)),
+                               Integer.parseInt(size.substring(separator + 1)) };
+        }
+        catch( RuntimeException e ) {
+            return null;
+        }
+    }
+
+    /**
+     * Parse a Leaper given by name or as "m,n" (e.g., "zebra" or "2,3").
+     *
+     * @param name      The Leaper to parse
+     * @return      The parsed Leaper, or null if it is unknown
+     */
+    private static Leaper parseLeaper( String name ) {
+        try {
+            return Leaper.forName( name );
+        }
+        catch( IllegalArgumentException e ) {
+            return null;
+        }
+    }
+
+    /**
+     * Parse a board size of the form "WIDTHxHEIGHT" (e.g., "10x12").
+     *
+     * @param size      The board size to parse
+     * @return      The parsed board, or null if the size is malformed
+     */
+    private static Board parseBoard( String size ) {
+        int separator = size.indexOf('x');
+
+        try {
+            return new Board( Integer.parseInt(size.substring(0, separator)),
+                              Integer.parseInt(size.substring(separator + 1)) );
+        }
+        catch( RuntimeException e ) {
+            return null;
         }
     }
 
@@ -97,26 +841,37 @@ public class Play {
      * Prints the Knight-piece's move history on each space, while depicting
      * its current location as a double asterik (i.e., "**").
      *
-     * @param board         2D array containing the move history
+     * @param geometry      Dimensions of the board being printed
+     * @param board         The move history of each square
      * @param moveNumber    Number of moves made so far
      */
-    private static void printBoard( int[][] board, int moveNumber ) {
-        for( int i = 0; i < Constants.BOARD_WIDTH; i++ ) {
+    private static void printBoard( Board geometry, VisitBoard board,
+                                    int moveNumber ) {
+        // Every cell is as wide as the largest possible move number
+        int cellWidth = Math.max( 2, Integer.toString(
+                                        geometry.getSquareCount() - 1).length() );
+        String blank = repeat( ' ', cellWidth );
+        String knight = repeat( '*', cellWidth );
+
+        for( int i = 0; i < geometry.getWidth(); i++ ) {
             // Print each space...
-            for( int j = 0; j < Constants.BOARD_HEIGHT; j++ ) {
+            for( int j = 0; j < geometry.getHeight(); j++ ) {
+                int visit = board.get( geometry.getSquare(i, j) );
+
                 System.out.print("[");
 
                 // No activity in this slot, so print a blank...
-                if( board[i][j] == Constants.EMPTY_SLOT )
-                    System.out.print("  ");
+                if( visit == Constants.EMPTY_SLOT )
+                    System.out.print( blank );
                 // ...print "**" for the Knight-piece's current position
-                else if( board[i][j] == moveNumber )
-                    System.out.print("**");
-                // Format the output for single-digit numbers
-                else if( board[i][j] < 10 )
-                    System.out.print("0" + board[i][j] );
-                else
-                    System.out.print( board[i][j] );
+                else if( visit == moveNumber )
+                    System.out.print( knight );
+                // Format the output with leading zeroes
+                else {
+                    String number = Integer.toString( visit );
+                    System.out.print( repeat('0', cellWidth - number.length())
+                                        + number );
+                }
 
                 System.out.print("]");
             }
@@ -127,4 +882,20 @@ public class Play {
         
         System.out.println("\nMove number:  " + moveNumber);
     }
+
+    /**
+     * Build a String of a single repeated character
+     *
+     * @param character     The character to repeat
+     * @param count         Number of times to repeat the character
+     * @return      The repeated characters
+     */
+    private static String repeat( char character, int count ) {
+        StringBuilder result = new StringBuilder();
+
+        for( int i = 0; i < count; i++ )
+            result.append( character );
+
+        return result.toString();
+    }
 }
@@ -0,0 +1,298 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Races several differently configured Solvers on the same tour, and keeps
+ * the first complete one.
+ *
+ * From most starting squares Warnsdorff's rule completes the tour without
+ * taking back a single move, but from an unlucky one the Solver can backtrack
+ * for longer than any budget allows. Which squares are unlucky depends on how
+ * the ties between moves are broken, so a tour that stalls one Solver is
+ * usually found straight away by another. The portfolio's variants are:
+ *
+ *      - a Solver for each of the FIRST, CENTER and LOOKAHEAD rules, with the
+ *        moves in the MoveTable's order;
+ *      - then, in turn, a Solver breaking ties at random, each with a seed of
+ *        its own, and a Solver with one of the three rules and the moves in a
+ *        shuffled order.
+ *
+ * Each variant keeps its own visits, degrees and tried moves; they all share
+ * the board's read-only MoveTable. The variants run on a pool of a thread per
+ * core, SLICE moves at a time: after each slice a variant goes to the back of
+ * the pool's queue, so every variant keeps searching however few cores there
+ * are. The first variant to complete the tour wins the race, and the others
+ * stop at the end of their current slice. The tour thus takes about as long
+ * as the fastest variant alone, times the number of variants per core.
+ *
+ * @author Darren M.
+ */
+public class PortfolioSolver {
+    public static final int DEFAULT_VARIANTS = 8;   // Variants raced
+    private static final long SLICE = 1 << 16;      // Moves per turn of a
+                                                    // variant
+
+    // Deterministic rules, raced first
+    private static final TieBreak[] RULES = { TieBreak.FIRST,
+                                              TieBreak.CENTER,
+                                              TieBreak.LOOKAHEAD };
+
+    private final Board _board;         // Geometry of the chessboard
+    private final VisitBoard _visit;    // The board which tracks visits
+    private final List<Variant> _variants;  // The Solvers raced
+    private final AtomicReference<Variant> _winner; // First complete tour
+    private final AtomicInteger running;    // Variants still searching
+    private final CountDownLatch _finished; // Released once the race is over
+    private ExecutorService _pool;      // Runs the variants' slices
+
+    /**
+     * PortfolioSolver tours the board from the given starting position.
+     *
+     * The first variant keeps its visits in the given storage; the others
+     * keep theirs on the Java heap.
+     *
+     * @param board         The board to tour
+     * @param visits        Empty storage for the visits, with one entry per
+     *                      square of the board
+     * @param startingX     X-coordinate of the Knight-piece's starting position
+     * @param startingY     Y-coordinate of the Knight-piece's starting position
+     * @param variants      The number of Solvers to race
+     */
+    public PortfolioSolver( Board board, VisitBoard visits, int startingX,
+                            int startingY, int variants ) {
+        if( variants <= 0 )
+            throw new IllegalArgumentException("A portfolio needs at least " +
+                                                "one variant: " + variants );
+
+        _board = board;
+        _visit = visits;
+        _variants = new ArrayList<Variant>( variants );
+        _winner = new AtomicReference<Variant>();
+        running = new AtomicInteger( variants );
+        _finished = new CountDownLatch( 1 );
+
+        // The variants follow from the starting square, like a Solver's seed
+        Random random = new Random( board.getSquare(startingX, startingY) );
+        int moveCount = board.getMoveTable().getMoveCount();
+
+        for( int i = 0; i < variants; i++ ) {
+            Solver solver = new Solver( board, (i == 0) ? visits :
+                    new ArrayVisitBoard(board.getSquareCount()),
+                    startingX, startingY );
+            String description;
+
+            if( i < RULES.length ) {
+                solver.setTieBreak( RULES[i] );
+                description = name( RULES[i] );
+            }
+            else if( (i - RULES.length) % 2 == 0 ) {
+                long seed = random.nextLong();
+
+                solver.setTieBreak( TieBreak.RANDOM );
+                solver.setSeed( seed );
+                description = name( TieBreak.RANDOM ) + ", seed " + seed;
+            }
+            else {
+                TieBreak rule = RULES[(i - RULES.length) / 2 % RULES.length];
+                int[] order = shuffle( moveCount, random );
+
+                solver.setTieBreak( rule );
+                solver.setMoveOrder( order );
+                description = name( rule ) + ", moves " + join( order );
+            }
+
+            _variants.add( new Variant(solver, description) );
+        }
+    }
+
+    /**
+     * Race the variants until one of them completes the tour, or all of them
+     * run out of budget; the storage given to the constructor then holds
+     * the winning tour, or else the deepest of the failed attempts.
+     *
+     * A PortfolioSolver only races once.
+     *
+     * @param budget    The maximum number of moves, made or taken back,
+     *                  each variant may spend on the search
+     * @return      true, if a variant completed the tour; false otherwise
+     */
+    public boolean solve( long budget ) {
+        _pool = Executors.newFixedThreadPool( Math.min(_variants.size(),
+                Runtime.getRuntime().availableProcessors()) );
+
+        try {
+            for( Variant variant : _variants ) {
+                variant.remaining = budget;
+                _pool.execute( variant );
+            }
+
+            _finished.await();
+        }
+        catch( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+        }
+        finally {
+            // Drop the queued slices and wait out the ones still running
+            _pool.shutdownNow();
+            try {
+                _pool.awaitTermination( Long.MAX_VALUE, TimeUnit.NANOSECONDS );
+            }
+            catch( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        Variant result = _winner.get();
+        if( result == null ) {
+            result = _variants.get( 0 );
+            for( Variant variant : _variants ) {
+                if( variant.solver.getMoveCount() >
+                        result.solver.getMoveCount() )
+                    result = variant;
+            }
+        }
+
+        // The first variant already filled the storage
+        VisitBoard visits = result.solver.getVisitBoard();
+        if( visits != _visit ) {
+            for( int square = 0; square < _board.getSquareCount(); square++ )
+                _visit.set( square, visits.get(square) );
+        }
+
+        return _winner.get() != null;
+    }
+
+    /**
+     * Describe the variant which won the race
+     *
+     * @return      Its tie-breaking rule, seed and move order, or null if
+     *              no variant completed the tour
+     */
+    public String getWinner() {
+        Variant winner = _winner.get();
+        return (winner == null) ? null : winner.description;
+    }
+
+    /**
+     * Get the number of variants raced
+     *
+     * @return      The number of Solvers in the portfolio
+     */
+    public int getVariantCount() {
+        return _variants.size();
+    }
+
+    /**
+     * Name a tie-breaking rule as Play's -tiebreak option does
+     *
+     * @param rule      The rule
+     * @return      Its name, in lower case
+     */
+    private static String name( TieBreak rule ) {
+        return rule.name().toLowerCase();
+    }
+
+    /**
+     * Shuffle the moves of a Leaper into a move order.
+     *
+     * @param moveCount     The number of moves
+     * @param random        The source of the shuffle
+     * @return      The move indices, in random order
+     */
+    private static int[] shuffle( int moveCount, Random random ) {
+        int[] order = new int[moveCount];
+        for( int i = 0; i < moveCount; i++ )
+            order[i] = i;
+
+        for( int i = moveCount - 1; i > 0; i-- ) {
+            int j = random.nextInt( i + 1 );
+            int swap = order[i];
+
+            order[i] = order[j];
+            order[j] = swap;
+        }
+
+        return order;
+    }
+
+    /**
+     * Join a move order with commas
+     *
+     * @param order     The move indices
+     * @return      The indices, e.g. "3,0,2,1"
+     */
+    private static String join( int[] order ) {
+        StringBuilder result = new StringBuilder();
+        for( int i = 0; i < order.length; i++ ) {
+            if( i > 0 )
+                result.append( ',' );
+            result.append( order[i] );
+        }
+
+        return result.toString();
+    }
+
+    /**
+     * One Solver of the portfolio, searching a slice at a time.
+     */
+    private class Variant implements Runnable {
+        private final Solver solver;        // The variant's search
+        private final String description;   // How the variant breaks ties
+        private long remaining;             // Budget left to spend
+
+        /**
+         * Variant races a configured Solver.
+         *
+         * @param solver        The Solver, not yet started
+         * @param description   Its tie-breaking rule, seed and move order
+         */
+        private Variant( Solver solver, String description ) {
+            this.solver = solver;
+            this.description = description;
+        }
+
+        /**
+         * Search for one slice, then queue the next slice unless the race
+         * is over.
+         */
+        @Override
+        public void run() {
+            // Another variant won while this one was queued
+            if( _winner.get() != null )
+                return;
+
+            long turn = Math.min( SLICE, remaining );
+            long spent = solver.getBudgetSpent();
+
+            if( solver.solve(turn) ) {
+                if( _winner.compareAndSet(null, this) )
+                    _finished.countDown();
+                return;
+            }
+
+            // A slice cut short means every move from the start was tried
+            spent = solver.getBudgetSpent() - spent;
+            remaining -= spent;
+            if( (spent < turn) || (remaining <= 0) ) {
+                if( running.decrementAndGet() == 0 )
+                    _finished.countDown();
+                return;
+            }
+
+            try {
+                _pool.execute( this );
+            }
+            catch( RejectedExecutionException e ) {
+                // The pool shut down as another variant won; nothing to do
+            }
+        }
+    }
+}
@@ -2,15 +2,18 @@
  * A Position class that represents a point on a 2D Cartesian coordinate
  * system.
  *
- * Able to tell its position, as well as set its position on the coordinate
- * system to a new location based on individual x-coordinates, y-coordinates,
- * or a pair of both.
+ * Positions are immutable values: two Positions with the same coordinates
+ * are equal, so they can be shared, cached and used as map keys. Positions on
+ * a board are best obtained from Board.getPosition(), which hands out one
+ * shared instance per square instead of allocating. Code that handles many
+ * coordinates at once can avoid objects altogether by packing them into a
+ * long with pack(), and reading them back with getX() and getY().
  *
  * @author Darren M.
  */
 public class Position {
-    private int xPosition;  // The x-coordinate of the position
-    private int yPosition;  // The y-coordinate of the position
+    private final int xPosition;    // The x-coordinate of the position
+    private final int yPosition;    // The y-coordinate of the position
 
     /**
      * A position of an x- and y-coordinate pair on a Cartesian coordinate
@@ -24,6 +27,47 @@ public class Position {
         yPosition = yCoordinate;
     }
 
+    /**
+     * Pack a pair of coordinates into a single long.
+     *
+     * @param xCoordinate   The x-coordinate, kept in the upper 32 bits
+     * @param yCoordinate   The y-coordinate, kept in the lower 32 bits
+     * @return      The packed coordinates
+     */
+    public static long pack( int xCoordinate, int yCoordinate ) {
+        return ((long) xCoordinate << 32) | (yCoordinate & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Get the x-coordinate of a pair packed by pack()
+     *
+     * @param packed    The packed coordinates
+     * @return      The x-coordinate
+     */
+    public static int getX( long packed ) {
+        return (int) (packed >> 32);
+    }
+
+    /**
+     * Get the y-coordinate of a pair packed by pack()
+     *
+     * @param packed    The packed coordinates
+     * @return      The y-coordinate
+     */
+    public static int getY( long packed ) {
+        return (int) packed;
+    }
+
+    /**
+     * Create the Position of a pair packed by pack()
+     *
+     * @param packed    The packed coordinates
+     * @return      The Position at the coordinates
+     */
+    public static Position unpack( long packed ) {
+        return new Position( getX(packed), getY(packed) );
+    }
+
     /**
      *  Obtain the x-position of the Position
      *
@@ -43,31 +87,67 @@ public class Position {
     }
 
     /**
-     * Move the position to the desired coordinates.
+     * Pack the Position's coordinates into a single long, as pack() does
      *
-     * @param xCoordinate   The x-coordinate to move this Position to
-     * @param yCoordiante   The y-coordinate to move this Position to
+     * @return      The packed coordinates
      */
-    public void moveToPosition( int xCoordinate, int yCoordinate ) {
-        setXPosition( xCoordinate );
-        setYPosition( yCoordinate );
+    public long toLong() {
+        return pack( xPosition, yPosition );
     }
 
     /**
-     * Set the x-coordinate to the desired position
+     * Obtain the Position at the desired coordinates; this Position is left
+     * as it is.
      *
-     * @param xCoordinate   The x-coordinate to move this Position to
+     * @param xCoordinate   The x-coordinate of the new Position
+     * @param yCoordinate   The y-coordinate of the new Position
+     * @return      The Position at the coordinates
      */
-    public void setXPosition( int xCoordinate ) {
-        xPosition = xCoordinate;
+    public Position at( int xCoordinate, int yCoordinate ) {
+        return new Position( xCoordinate, yCoordinate );
     }
 
     /**
-     * Set the y-coordinate to the desired position
+     * Obtain the Position with the desired x-coordinate and this Position's
+     * y-coordinate; this Position is left as it is.
      *
-     * @param yCoordinate   The y-coordainte to move this Position to
+     * @param xCoordinate   The x-coordinate of the new Position
+     * @return      The Position at the coordinates
      */
-    public void setYPosition( int yCoordinate ) {
-        yPosition = yCoordinate;
+    public Position withX( int xCoordinate ) {
+        return new Position( xCoordinate, yPosition );
+    }
+
+    /**
+     * Obtain the Position with this Position's x-coordinate and the desired
+     * y-coordinate; this Position is left as it is.
+     *
+     * @param yCoordinate   The y-coordinate of the new Position
+     * @return      The Position at the coordinates
+     */
+    public Position withY( int yCoordinate ) {
+        return new Position( xPosition, yCoordinate );
+    }
+
+    @Override
+    public boolean equals( Object other ) {
+        if( this == other )
+            return true;
+        else if(! (other instanceof Position) )
+            return false;
+
+        Position position = (Position) other;
+        return (xPosition == position.xPosition) &&
+                (yPosition == position.yPosition);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * xPosition + yPosition;
+    }
+
+    @Override
+    public String toString() {
+        return "(" + xPosition + "," + yPosition + ")";
     }
 }
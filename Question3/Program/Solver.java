@@ -1,5 +1,11 @@
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
 
 /**
  * Solves the "Lonely Knight on a Chessboard" puzzle presented as Puzzle #1.
@@ -10,68 +16,189 @@ import java.util.List;
  * moves) each move individually possess, resorting to the move with the least
  * amount of options. 
  *
+ * Moves can be made one at a time with nextMove(), or the whole tour can be
+ * run with solve(), which takes moves back and tries the next best ones
+ * whenever the Knight-piece runs into a dead-end (after starting over with
+ * TieBreak.CENTER, if it was only breaking ties by TieBreak.FIRST). solveClosed() instead looks
+ * for a closed tour, whose last square is a move away from the first.
+ * The moves of nextSquare() can also be pulled through squares() and
+ * squareStream(), or pushed to a subscriber by a MovePublisher. A long
+ * solve() can keep checkpoints of its search with a SolverCheckpoint, and be
+ * resumed from them after a crash.
+ *
  * @author Darren M.
  */
 public class Solver {
-    private int[][] _visit;     // The board which tracks visits
+    private static final long NEAR_START = 25;  // Squared distance from the
+                                                // start below which closing
+                                                // rotations wander freely
+    private static final long SWITCH_PERIOD = 1000; // Closing rotations
+                                                    // before switching ends
+    private Board _board;       // Geometry of the chessboard
+    private VisitBoard _visit;  // The board which tracks visits, per square
     private Knight _knight;     // The Knight-piece
     private int numberOfMoves;  // Amount of moves committed
+    private MoveTable _table;   // Precomputed moves for the board
+    private TieBreak _tieBreak; // How to choose between equal moves
+    private TieBreak _requestedTieBreak;    // The rule set by setTieBreak(),
+                                            // before solve() started over
+    private byte[] _tried;      // Moves already tried from each square
+    private byte[] _degree;     // Unvisited neighbours of each square
+    private int _finalSquare;   // Square the tour must end on, or -1
+    private int startSquare;    // Square the tour started on
+    private boolean closed;     // Keep the start's neighbours for the end
+    private Random _random;     // Picks rotations when closing a tour, and
+                                // moves for TieBreak.RANDOM
+    private byte[] _rank;       // Rank of each move in the move order, or
+                                // null for the MoveTable's order
+    private SolverCheckpoint _checkpoint;   // Log of the search, if kept
+    private int[] _path;        // Square reached on each move, if logged
+    private int lowWater;       // Fewest moves since the last checkpoint
+    private long spent;         // Budget spent by solve() so far
+    private long nextCheckpoint;    // Budget spent at the next checkpoint
 
     /**
      * Solver drives the Knight-piece around the board, minimizing the amount
      * of moves it takes to visit every square on the board at least once
      *
+     * @param board         The board to tour
+     * @param visits        Empty storage for the visits, with one entry per
+     *                      square of the board
      * @param startingX     X-coordinate of the Knight-piece's starting position
      * @param startingY     Y-coordinate of the Knight-piece's starting position
      */
-    public Solver( int startingX, int startingY ) {
-        _visit = new int[Constants.BOARD_WIDTH][Constants.BOARD_HEIGHT];
-        _knight = new Knight( startingX, startingY );
-        numberOfMoves = 0;
+    public Solver( Board board, VisitBoard visits, int startingX,
+                   int startingY ) {
+        if(! board.contains(startingX, startingY) )
+            throw new IllegalArgumentException("Starting position (" +
+                                                startingX + "," + startingY +
+                                                ") is not on the " + board +
+                                                " board");
+        if( visits.getSquareCount() != board.getSquareCount() )
+            throw new IllegalArgumentException("Visit storage holds " +
+                                                visits.getSquareCount() +
+                                                " squares; the " + board +
+                                                " board needs " +
+                                                board.getSquareCount() );
 
-        // Initialize the Visits board
-        for(int i = 0; i < Constants.BOARD_WIDTH; i++) {
-            for(int j = 0; j < Constants.BOARD_HEIGHT; j++) {
-                _visit[i][j] = Constants.EMPTY_SLOT;
-            }
-        }
+        _board = board;
+        _visit = visits;
+        _knight = new Knight( board, startingX, startingY );
+        _table = board.getMoveTable();
+        numberOfMoves = 0;
+        _tieBreak = TieBreak.FIRST;
+        _requestedTieBreak = TieBreak.FIRST;
+        _degree = _table.copyDegrees();
+        _finalSquare = -1;
+        startSquare = board.getSquare( startingX, startingY );
+        closed = false;
 
         // Mark the starting point as visited
-        _visit[startingX][startingY] = numberOfMoves;
+        visit( startSquare );
     }
 
     /**
-     * Filters a Knight-piece's movelist for non-previously visited spaces.
+     * Solver drives the Knight-piece around the board, tracking the visits
+     * in an array on the Java heap
+     *
+     * @param board         The board to tour
+     * @param startingX     X-coordinate of the Knight-piece's starting position
+     * @param startingY     Y-coordinate of the Knight-piece's starting position
+     */
+    public Solver( Board board, int startingX, int startingY ) {
+        this( board, new ArrayVisitBoard(board.getSquareCount()), startingX,
+              startingY );
+    }
+
+    /**
+     * Solver drives the Knight-piece around the standard 8x8 board
      *
-     * @param moveList  List of moves available to a Knight-piece to filter
-     * @return      The list of moves which have not been performed before
+     * @param startingX     X-coordinate of the Knight-piece's starting position
+     * @param startingY     Y-coordinate of the Knight-piece's starting position
      */
-    private List<Position> filterForNonVisits( List<Position> moveList ) {
-        List<Position> result = new ArrayList<Position>();
+    public Solver( int startingX, int startingY ) {
+        this( Board.STANDARD, startingX, startingY );
+    }
 
-        while( moveList.size() > 0 ) {
-            Position position = moveList.remove(0);
+    /**
+     * Filters a Knight-piece's movelist for non-previously visited spaces.
+     *
+     * Package-private so the benchmarks can measure it on its own.
+     *
+     * @param square    The square the Knight-piece moves from
+     * @return      Bitmask of the moves, as laid out by the MoveTable, which
+     *              lead to squares that have not been visited before
+     */
+    int filterForNonVisits( int square ) {
+        int result = 0;
 
-            int xCoordinate = position.getXPosition();
-            int yCoordinate = position.getYPosition();
+        for( int mask = _table.getMoveMask(square); mask != 0;
+                mask &= mask - 1 ) {
+            int move = Integer.numberOfTrailingZeros( mask );
+            int destination = square + _table.getDelta( move );
 
-            // Absorb the Position if it hasn't been visited before
-            if( _visit[xCoordinate][yCoordinate] == Constants.EMPTY_SLOT )
-                result.add( position );
+            // Absorb the move if its destination hasn't been visited before
+            if( _visit.get(destination) == Constants.EMPTY_SLOT )
+                result |= 1 << move;
         }
 
+        if( SolverMetrics.ENABLED )
+            SolverMetrics.CANDIDATES.add( Integer.bitCount(result) );
+
         return result;
     }
 
     /**
      * Obtain the board marking the Knight-piece's visits
      *
+     * The board is copied into a 2D array indexed by [x][y]; on large boards
+     * prefer getVisitBoard(), which reads the visits in place.
+     *
      * @return      The 2D array representing the board
      */
     public int[][] getBoard() {
+        int[][] result = new int[_board.getWidth()][_board.getHeight()];
+
+        int square = 0;
+        for( int j = 0; j < _board.getHeight(); j++ ) {
+            for( int i = 0; i < _board.getWidth(); i++ ) {
+                result[i][j] = _visit.get( square++ );
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Obtain a live view of the board marking the Knight-piece's visits.
+     *
+     * Nothing is copied; the view reflects every later move. Callers must
+     * not modify it.
+     *
+     * @return      The Solver's visit storage, indexed by square
+     */
+    public VisitBoard getVisitBoard() {
         return _visit;
     }
 
+    /**
+     * Get the geometry of the board being toured
+     *
+     * @return      The Solver's board
+     */
+    public Board getGeometry() {
+        return _board;
+    }
+
+    /**
+     * Get the number of moves committed so far
+     *
+     * @return      The number of moves the Knight-piece has made
+     */
+    public int getMoveCount() {
+        return numberOfMoves;
+    }
+
     /**
      * Get the knight's position on the board
      *
@@ -81,24 +208,470 @@ public class Solver {
         return _knight.getPosition();
     }
 
+    /**
+     * Choose the rule used to break ties between moves of equal weight.
+     *
+     * @param tieBreak  The tie-breaking rule; TieBreak.FIRST by default
+     */
+    public void setTieBreak( TieBreak tieBreak ) {
+        _tieBreak = tieBreak;
+        _requestedTieBreak = tieBreak;
+    }
+
+    /**
+     * Seed the choices made at random: the moves taken by TieBreak.RANDOM,
+     * and the rotations of solveClosed().
+     *
+     * @param seed      The seed; the starting square by default
+     */
+    public void setSeed( long seed ) {
+        _random = new Random( seed );
+    }
+
+    /**
+     * Choose the order in which moves of equal weight are preferred, once
+     * the tie-breaking rule finds nothing between them; TieBreak.FIRST then
+     * takes the move coming first in this order.
+     *
+     * @param order     The MoveTable's move indices, most preferred first, or
+     *                  null for the MoveTable's own order
+     */
+    public void setMoveOrder( int[] order ) {
+        if( order == null ) {
+            _rank = null;
+            return;
+        }
+
+        if( order.length != _table.getMoveCount() )
+            throw new IllegalArgumentException("Move order has " +
+                                                order.length + " moves; the " +
+                                                _board.getLeaper() + " has " +
+                                                _table.getMoveCount() );
+
+        byte[] rank = new byte[order.length];
+        Arrays.fill( rank, (byte) -1 );
+        for( int i = 0; i < order.length; i++ ) {
+            if( (order[i] < 0) || (order[i] >= order.length) ||
+                    (rank[order[i]] >= 0) )
+                throw new IllegalArgumentException("Move order " +
+                                                    Arrays.toString(order) +
+                                                    " is not a permutation " +
+                                                    "of the moves");
+            rank[order[i]] = (byte) i;
+        }
+
+        _rank = rank;
+    }
+
+    /**
+     * Start over from a new starting position, reusing the Solver's storage.
+     *
+     * The tie-breaking rule set and move order are kept; any required final
+     * square, closed tour search or checkpoint log is dropped.
+     *
+     * @param startingX     X-coordinate of the Knight-piece's starting position
+     * @param startingY     Y-coordinate of the Knight-piece's starting position
+     */
+    public void reset( int startingX, int startingY ) {
+        if(! _board.contains(startingX, startingY) )
+            throw new IllegalArgumentException("Starting position (" +
+                                                startingX + "," + startingY +
+                                                ") is not on the " + _board +
+                                                " board");
+
+        _visit.clear();
+        _table.copyDegrees( _degree );
+        if( _tried != null )
+            Arrays.fill( _tried, (byte) 0 );
+
+        _knight = new Knight( _board, startingX, startingY );
+        numberOfMoves = 0;
+        _tieBreak = _requestedTieBreak;
+        _finalSquare = -1;
+        startSquare = _board.getSquare( startingX, startingY );
+        closed = false;
+        _checkpoint = null;
+        _path = null;
+        spent = 0;
+
+        // Mark the starting point as visited
+        visit( startSquare );
+    }
+
+    /**
+     * Require the tour to end on the given square.
+     *
+     * The square is only entered on the very last move, and the search
+     * backtracks as soon as it can no longer be reached.
+     *
+     * @param xCoordinate   The x-coordinate of the final square
+     * @param yCoordinate   The y-coordinate of the final square
+     */
+    public void setFinalSquare( int xCoordinate, int yCoordinate ) {
+        if(! _board.contains(xCoordinate, yCoordinate) )
+            throw new IllegalArgumentException("Final position (" +
+                                                xCoordinate + "," +
+                                                yCoordinate + ") is not on " +
+                                                "the " + _board + " board");
+
+        int square = _board.getSquare( xCoordinate, yCoordinate );
+        if( _visit.get(square) != Constants.EMPTY_SLOT )
+            throw new IllegalArgumentException("Final position (" +
+                                                xCoordinate + "," +
+                                                yCoordinate + ") has " +
+                                                "already been visited");
+
+        _finalSquare = square;
+    }
+
+    /**
+     * Keep checkpoints of solve()'s search in a log, from which a new Solver
+     * can resume it; see SolverCheckpoint.
+     *
+     * The log starts with the moves made so far, and records the tie-breaking
+     * rule and final square, which must therefore be set beforehand. Neither
+     * random tie-breaks nor a move order can be logged, so searches using
+     * them can't be checkpointed.
+     *
+     * @param checkpoint    The log to keep, which the caller closes once the
+     *                      search is over
+     */
+    public void setCheckpoint( SolverCheckpoint checkpoint ) {
+        if( (_tieBreak == TieBreak.RANDOM) || (_rank != null) )
+            throw new IllegalArgumentException("Searches with random " +
+                                                "tie-breaks or a move order " +
+                                                "can't be checkpointed");
+
+        checkpoint.start( _board, startSquare, _finalSquare, _tieBreak );
+
+        // The search only tracks its squares move by move from here on
+        _path = new int[_board.getSquareCount()];
+        _path[0] = startSquare;
+        for( int move = 1; move <= numberOfMoves; move++ ) {
+            int previous = _path[move - 1];
+
+            for( int mask = _table.getMoveMask(previous); mask != 0;
+                    mask &= mask - 1 ) {
+                int square = previous +
+                        _table.getDelta( Integer.numberOfTrailingZeros(mask) );
+
+                if( _visit.get(square) == move )
+                    _path[move] = square;
+            }
+        }
+
+        _checkpoint = checkpoint;
+        lowWater = 0;
+        nextCheckpoint = spent;
+    }
+
+    /**
+     * Take over a search replayed from a checkpoint log; called by
+     * SolverCheckpoint.resume() on a fresh Solver.
+     *
+     * @param path          The square reached on each move
+     * @param tried         The moves already tried from each square of path
+     * @param length        The number of squares on the path
+     * @param spent         The budget solve() had spent
+     * @param checkpoint    The log to carry on keeping
+     */
+    void restore( int[] path, byte[] tried, int length, long spent,
+                  SolverCheckpoint checkpoint ) {
+        for( int move = 1; move < length; move++ ) {
+            _knight.moveToSquare( path[move] );
+            numberOfMoves++;
+            visit( path[move] );
+        }
+
+        for( int move = 0; move < length; move++ ) {
+            if( tried[move] != 0 ) {
+                if( _tried == null )
+                    _tried = new byte[_board.getSquareCount()];
+                _tried[path[move]] = tried[move];
+            }
+        }
+
+        this.spent = spent;
+        _checkpoint = checkpoint;
+        _path = path;
+        lowWater = numberOfMoves;
+        nextCheckpoint = spent + checkpoint.getPeriod();
+    }
+
+    /**
+     * Obtain the checkpoint log of the search
+     *
+     * @return      The log set by setCheckpoint() or resumed from, or null
+     */
+    public SolverCheckpoint getCheckpoint() {
+        return _checkpoint;
+    }
+
+    /**
+     * Get the budget solve() has spent on this Solver's search, including
+     * any spent before it was resumed from a checkpoint
+     *
+     * @return      The moves made or taken back by solve() so far
+     */
+    public long getBudgetSpent() {
+        return spent;
+    }
+
+    /**
+     * Check if the Knight-piece has visited every square of the board
+     *
+     * @return      true, if the tour is complete; false otherwise
+     */
+    public boolean isComplete() {
+        return numberOfMoves == _board.getSquareCount() - 1;
+    }
+
+    /**
+     * Check if the Knight-piece has visited every square and ended a single
+     * move away from its starting square
+     *
+     * @return      true, if the tour is complete and closed; false otherwise
+     */
+    public boolean isClosed() {
+        return isComplete() && (_board.getSquareCount() > 1) &&
+                _table.isMove( _knight.getSquare(), startSquare );
+    }
+
     /**
      * Obtain the number of moves a Knight-piece can make from a given
-     * position without re-visiting a square.
-     * 
-     * @param xPosition     X-coordinate of the position the Knight moves from
-     * @param yPosition     Y-coordinate of the position the Knight moves from
+     * square without re-visiting a square.
+     *
+     * The counts are kept up to date as squares are visited and taken back,
+     * rather than recomputed from the square's moves.
+     *
+     * @param square    The square the Knight moves from
      * @return      The number of moves a Knight-piece can make from the
-     *              given position, minus the moves that would revisit a
+     *              given square, minus the moves that would revisit a
      *              square.
      */
-    private int getNumberOfMoves(int xPosition, int yPosition) {
-        List<Position> moveList =
-                _knight.getMovesFromPosition(xPosition, yPosition);
+    private int getNumberOfMoves( int square ) {
+        return _degree[square];
+    }
+
+    /**
+     * Mark a square as visited on the current move.
+     *
+     * Every neighbour of the square loses it as an onward move, which keeps
+     * getNumberOfMoves() down to a single array read.
+     *
+     * @param square    The square the Knight-piece has moved to
+     */
+    private void visit( int square ) {
+        _visit.set( square, numberOfMoves );
+
+        for( int mask = _table.getMoveMask(square); mask != 0;
+                mask &= mask - 1 )
+            _degree[square + _table.getDelta(
+                                Integer.numberOfTrailingZeros(mask))]--;
+    }
+
+    /**
+     * Mark a square as unvisited again, undoing visit().
+     *
+     * @param square    The square the Knight-piece is taken back from
+     */
+    private void unvisit( int square ) {
+        _visit.set( square, Constants.EMPTY_SLOT );
+
+        for( int mask = _table.getMoveMask(square); mask != 0;
+                mask &= mask - 1 )
+            _degree[square + _table.getDelta(
+                                Integer.numberOfTrailingZeros(mask))]++;
+    }
+
+    /**
+     * Obtain the smallest number of onward moves among the unvisited squares
+     * reachable from a given square.
+     *
+     * @param square    The square the Knight moves from
+     * @return      The least getNumberOfMoves() over the square's unvisited
+     *              destinations, or Integer.MAX_VALUE if there are none
+     */
+    private int getLeastOnwardMoves( int square ) {
+        int result = Integer.MAX_VALUE;
+
+        for( int moves = filterForNonVisits(square); moves != 0;
+                moves &= moves - 1 ) {
+            result = Math.min( result, getNumberOfMoves(square +
+                    _table.getDelta(Integer.numberOfTrailingZeros(moves))) );
+        }
+
+        return result;
+    }
+
+    /**
+     * Obtain how far a square lies from the center of the board.
+     *
+     * @param square    The square to measure
+     * @return      The squared distance from the center, doubled on each
+     *              axis to stay in whole numbers
+     */
+    private long getDistanceFromCenter( int square ) {
+        long xDistance = 2L * _table.getX(square) - (_board.getWidth() - 1);
+        long yDistance = 2L * _table.getY(square) - (_board.getHeight() - 1);
+
+        return xDistance * xDistance + yDistance * yDistance;
+    }
+
+    /**
+     * Obtain how far apart two squares lie.
+     *
+     * @param square    The first square
+     * @param other     The second square
+     * @return      The squared distance between the squares
+     */
+    private long getDistance( int square, int other ) {
+        long xDistance = _table.getX( square ) - _table.getX( other );
+        long yDistance = _table.getY( square ) - _table.getY( other );
+
+        return xDistance * xDistance + yDistance * yDistance;
+    }
+
+    /**
+     * Compare two squares of equal weight by the onward moves of their
+     * lightest onward move, as TieBreak.LOOKAHEAD does.
+     *
+     * @param square    The square being considered
+     * @param best      The preferred square so far
+     * @return      A positive number, if the considered square is
+     *              preferable; a negative one, if it isn't; and 0, if
+     *              neither rule finds anything between them
+     */
+    private int compareLookahead( int square, int best ) {
+        int onward = getLeastOnwardMoves( square );
+        int bestOnward = getLeastOnwardMoves( best );
+
+        if( onward != bestOnward )
+            return Integer.compare( bestOnward, onward );
+
+        // Equal one move further ahead; settle it by the center rule
+        return compareCenter( square, best );
+    }
+
+    /**
+     * Compare two squares of equal weight by how far they lie from the
+     * center, as TieBreak.CENTER does.
+     *
+     * @param square    The square being considered
+     * @param best      The preferred square so far
+     * @return      A positive number, if the considered square lies further
+     *              out; a negative one, if closer in; and 0, if neither
+     */
+    private int compareCenter( int square, int best ) {
+        return Long.compare( getDistanceFromCenter(square),
+                             getDistanceFromCenter(best) );
+    }
+
+    /**
+     * Compare a square with another of equal weight, according to the
+     * tie-breaking rule.
+     *
+     * @param square    The square being considered
+     * @param best      The preferred square so far
+     * @param ties      The number of squares of equal weight so far,
+     *                  counting both of these
+     * @return      A positive number, if the considered square is
+     *              preferable; a negative one, if the preferred square stays
+     *              so; and 0, if the rule finds nothing between them
+     */
+    private int compareTie( int square, int best, int ties ) {
+        switch( _tieBreak ) {
+            case LOOKAHEAD:
+                return compareLookahead( square, best );
+            case CENTER:
+                return compareCenter( square, best );
+            case RANDOM:
+                if( _random == null )
+                    _random = new Random( startSquare );
+
+                // Keeps each of the squares so far with equal chance
+                return (_random.nextInt(ties) == 0) ? 1 : -1;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Choose the move the Knight-piece should make from a square.
+     *
+     * The square's moves are filtered for non-visited spaces. Each move is
+     * weighed by how many moves they themselves have, where the move with the
+     * least weight is taken; ties are settled by the tie-breaking rule, and
+     * then by the move order.
+     *
+     * @param current   The square the Knight-piece moves from
+     * @param excluded  Bitmask of moves which must not be taken
+     * @return      The chosen destination, or -1 if no move is left
+     */
+    private int chooseMove( int current, int excluded ) {
+        int smallestWeight = Integer.MAX_VALUE;
+        int destination = -1;
+        int destinationMove = -1;
+        int ties = 0;
+        int lastMove = _board.getSquareCount() - 1;
+
+        // The required final square can no longer be reached
+        if( (_finalSquare >= 0) && (numberOfMoves < lastMove - 1) &&
+                (getNumberOfMoves(_finalSquare) == 0) )
+            return -1;
+
+        for( int moves = filterForNonVisits(current) & ~excluded; moves != 0;
+                moves &= moves - 1 ) {
+            int move = Integer.numberOfTrailingZeros( moves );
+            int square = current + _table.getDelta( move );
+            int weight = getNumberOfMoves( square );
+
+            // A closed tour returns to the start, which still counts as an
+            // onward move for its neighbours; they are left for the end
+            if( closed && _table.isMove(square, startSquare) )
+                weight++;
+
+            // The required final square is saved for the last move
+            if( (square == _finalSquare) && (numberOfMoves < lastMove - 1) )
+                continue;
+
+            if( weight < smallestWeight ) {
+                smallestWeight = weight;
+                destination = square;
+                destinationMove = move;
+                ties = 1;
+            }
+            else if( weight == smallestWeight ) {
+                if( SolverMetrics.ENABLED )
+                    SolverMetrics.TIES.increment();
+
+                int preference = compareTie( square, destination, ++ties );
+                if( (preference > 0) || ((preference == 0) && (_rank != null) &&
+                        (_rank[move] < _rank[destinationMove])) ) {
+                    destination = square;
+                    destinationMove = move;
+                }
+            }
+        }
+
+        return destination;
+    }
+
+    /**
+     * Find the move leading from one square to another.
+     *
+     * @param from      The square the Knight-piece moves from
+     * @param to        The square the Knight-piece moves to
+     * @return      Index of the move within the MoveTable
+     */
+    private int getMoveIndex( int from, int to ) {
+        int mask = _table.getMoveMask( from );
 
-        //Filter for previous visited spaces
-        List<Position> filteredList = filterForNonVisits( moveList );
+        while( from + _table.getDelta(Integer.numberOfTrailingZeros(mask)) !=
+                to )
+            mask &= mask - 1;
 
-        return filteredList.size();
+        return Integer.numberOfTrailingZeros( mask );
     }
 
     /**
@@ -106,47 +679,492 @@ public class Solver {
      *
      * The Knight-piece's moves are filtered for non-visited spaces. Each move
      * is weighed by how many moves they themselves have, where the move with
-     * the least weight is taken. Ties are wrongfully assumed to be equal in
-     * value and will choose the first move encountered.
+     * the least weight is taken. Ties are settled by the tie-breaking rule;
+     * by default the first move encountered is chosen.
      *
      * @return      The position where the Knight-piece moved to
      */
     public Position nextMove() {
-        // Filter for non-visited spaces
-        List<Position> moveList =
-                filterForNonVisits( _knight.getPossibleMoves() );
+        int square = nextSquare();
 
-        // No non-redundant moves available
-        if( moveList.size() == 0 )
+        if( square < 0 )
             return null;
 
-        // Calculate weights
-        int[] weights = new int[moveList.size()];
-        for( int i = 0; i < moveList.size(); i++ ) {
-            Position position = moveList.get(i);
+        return _table.getPosition( square );
+    }
+
+    /**
+     * Moves the Knight-piece to the next viable, unvisited space on the board.
+     *
+     * Performs the same move as nextMove(), but reports the destination as a
+     * square index so that a full tour can be driven without allocating.
+     *
+     * @return      The square index the Knight-piece moved to, or -1 if no
+     *              unvisited square can be reached
+     */
+    public int nextSquare() {
+        int destination = chooseMove( _knight.getSquare(), 0 );
 
-            weights[i] = getNumberOfMoves( position.getXPosition(),
-                                            position.getYPosition() );
+        // No non-redundant moves available
+        if( destination < 0 ) {
+            if( SolverMetrics.ENABLED )
+                SolverMetrics.DEAD_ENDS.increment();
+            return -1;
         }
 
-        // Find the smallest weight
-        int smallestWeight = 1000;
-        int index = 0;
-        for( int i = 0; i < weights.length; i++ ) {
-            if( weights[i] < smallestWeight ) {
-                smallestWeight = weights[i];
-                index = i;
+        // Move the piece to the chosen destination
+        _knight.moveToSquare( destination );
+        numberOfMoves++;
+        visit( destination );
+        if( _path != null )
+            _path[numberOfMoves] = destination;
+
+        if( SolverMetrics.ENABLED )
+            SolverMetrics.MOVES_MADE.increment();
+
+        return destination;
+    }
+
+    /**
+     * Iterate over the moves nextSquare() makes from here on.
+     *
+     * Each move is only made once the iterator is asked for it, so consumers
+     * hold nothing but the square at hand, whatever the size of the board.
+     * The iteration ends at the first dead-end.
+     *
+     * @return      The square index reached by each following move
+     */
+    public PrimitiveIterator.OfInt squares() {
+        return new PrimitiveIterator.OfInt() {
+            private boolean moved;  // Whether the next move has been made
+            private int square;     // The square it reached, or -1
+
+            @Override
+            public boolean hasNext() {
+                if(! moved ) {
+                    square = nextSquare();
+                    moved = true;
+                }
+
+                return square >= 0;
             }
+
+            @Override
+            public int nextInt() {
+                if(! hasNext() )
+                    throw new NoSuchElementException("The Knight-piece has " +
+                                                     "no move left");
+
+                moved = false;
+                return square;
+            }
+        };
+    }
+
+    /**
+     * Stream the moves nextSquare() makes from here on, as squares() does.
+     *
+     * @return      A sequential stream of the square index reached by each
+     *              following move
+     */
+    public IntStream squareStream() {
+        return StreamSupport.intStream(
+                Spliterators.spliteratorUnknownSize( squares(),
+                        Spliterator.ORDERED | Spliterator.DISTINCT |
+                        Spliterator.NONNULL ), false );
+    }
+
+    /**
+     * Take back the Knight-piece's last move.
+     *
+     * The move is remembered as tried, so that the next move chosen from the
+     * square the Knight-piece returns to is a different one.
+     */
+    private void retreat() {
+        int current = _knight.getSquare();
+
+        // The previous square is the neighbour visited one move earlier
+        int previous = -1;
+        for( int mask = _table.getMoveMask(current); previous < 0;
+                mask &= mask - 1 ) {
+            int square = current +
+                    _table.getDelta( Integer.numberOfTrailingZeros(mask) );
+
+            if( _visit.get(square) == numberOfMoves - 1 )
+                previous = square;
         }
 
-        // Grab the chosen destination...
-        Position destination = moveList.get(index);
-        int xPosition = destination.getXPosition();
-        int yPosition = destination.getYPosition();
-        // ... and moves the piece
-        _knight.move( destination );
-        _visit[xPosition][yPosition] = ++numberOfMoves;
+        // Moves tried from the abandoned square no longer apply
+        _tried[current] = 0;
+        _tried[previous] |= (byte) (1 << getMoveIndex(previous, current));
 
-        return destination;
+        unvisit( current );
+        numberOfMoves--;
+        _knight.moveToSquare( previous );
+        if( numberOfMoves < lowWater )
+            lowWater = numberOfMoves;
+
+        if( SolverMetrics.ENABLED )
+            SolverMetrics.RETREATS.increment();
+    }
+
+    /**
+     * Drive the Knight-piece until it has visited every square.
+     *
+     * Moves are chosen as in nextSquare(). When the Knight-piece runs into a
+     * dead-end, moves are taken back one at a time and the next best move is
+     * tried instead, until a full tour is found or the budget runs out.
+     *
+     * TieBreak.FIRST only gets the one greedy run: its ties go the same way
+     * all over the board, and on boards of a few hundred squares a side the
+     * greedy moves regularly strand a square, which backtracking over FIRST's
+     * ties hardly ever recovers from. Its first dead-end therefore starts the
+     * search over from the starting square with TieBreak.CENTER, which is kept
+     * from then on; the budget spent so far still counts.
+     *
+     * @param budget    The maximum number of moves, made or taken back,
+     *                  to spend on the search
+     * @return      true, if the tour is complete; false if the budget ran out
+     *              or no tour exists from the starting position
+     */
+    public boolean solve( long budget ) {
+        if(! SolverMetrics.ENABLED )
+            return search( budget );
+
+        long start = System.nanoTime();
+        boolean complete = search( budget );
+
+        SolverMetrics.endPhase( SolverMetrics.Phase.SOLVE, start );
+        SolverMetrics.recordTour( _board, startSquare, complete,
+                                  System.nanoTime() - start );
+        return complete;
+    }
+
+    /**
+     * Run the search of solve().
+     *
+     * @param budget    The maximum number of moves, made or taken back,
+     *                  to spend on the search
+     * @return      true, if the tour is complete; false otherwise
+     */
+    private boolean search( long budget ) {
+        int lastMove = _board.getSquareCount() - 1;
+
+        while( (numberOfMoves < lastMove) && (budget-- > 0) ) {
+            if( (_checkpoint != null) && (spent >= nextCheckpoint) )
+                checkpoint( false );
+            spent++;
+
+            int current = _knight.getSquare();
+            int excluded = (_tried == null) ? 0 : _tried[current];
+            int destination = chooseMove( current, excluded );
+
+            if( destination >= 0 ) {
+                _knight.moveToSquare( destination );
+                numberOfMoves++;
+                visit( destination );
+                if( _path != null )
+                    _path[numberOfMoves] = destination;
+
+                if( SolverMetrics.ENABLED )
+                    SolverMetrics.MOVES_MADE.increment();
+                continue;
+            }
+
+            if( SolverMetrics.ENABLED )
+                SolverMetrics.DEAD_ENDS.increment();
+
+            // Every move from the starting position failed; no tour exists
+            if( numberOfMoves == 0 )
+                break;
+            else if( _tieBreak == TieBreak.FIRST )
+                restart( TieBreak.CENTER );
+            else {
+                // Only searches which hit a dead-end pay for the tried moves
+                if( _tried == null )
+                    _tried = new byte[_board.getSquareCount()];
+
+                retreat();
+            }
+        }
+
+        // Log where the search ended, however it ended
+        if( _checkpoint != null )
+            checkpoint( true );
+
+        return numberOfMoves == lastMove;
+    }
+
+    /**
+     * Take back every move and start the search over from the starting square
+     * with another tie-breaking rule; any required final square is kept, and
+     * any checkpoint log begins afresh.
+     *
+     * @param tieBreak  The tie-breaking rule to search with from now on
+     */
+    private void restart( TieBreak tieBreak ) {
+        _visit.clear();
+        _table.copyDegrees( _degree );
+        if( _tried != null )
+            Arrays.fill( _tried, (byte) 0 );
+
+        _knight = new Knight( _board, _table.getX(startSquare),
+                              _table.getY(startSquare) );
+        numberOfMoves = 0;
+        _tieBreak = tieBreak;
+        visit( startSquare );
+
+        if( _checkpoint != null ) {
+            _checkpoint.start( _board, startSquare, _finalSquare, tieBreak );
+            lowWater = 0;
+            nextCheckpoint = spent;
+        }
+    }
+
+    /**
+     * Hand the path above the low-water mark to the checkpoint log.
+     *
+     * Unless forced, the checkpoint is skipped while the log is still busy
+     * writing the last one; the part of the path to log then keeps growing
+     * until the next checkpoint.
+     *
+     * @param force     Whether to log the path even if the log is busy
+     */
+    private void checkpoint( boolean force ) {
+        nextCheckpoint = spent + _checkpoint.getPeriod();
+        if( !force && _checkpoint.isBusy() )
+            return;
+
+        int[] squares = Arrays.copyOfRange( _path, lowWater,
+                                            numberOfMoves + 1 );
+        byte[] tried = new byte[squares.length];
+        if( _tried != null ) {
+            for( int i = 0; i < squares.length; i++ )
+                tried[i] = _tried[squares[i]];
+        }
+
+        _checkpoint.append( lowWater, squares, tried, spent );
+        lowWater = numberOfMoves;
+    }
+
+    /**
+     * Drive the Knight-piece around a closed tour, ending a single move away
+     * from the starting square.
+     *
+     * Moves are chosen as in nextSquare(), except that the starting square's
+     * neighbours are kept for the end of the tour. If the Knight-piece then
+     * runs into a dead-end, or completes the tour too far from the start, the
+     * path is repaired by Posa rotations rather than solved again: when the
+     * last square is a move away from an earlier square of the path, the path
+     * can be rejoined there and the squares after it walked in reverse,
+     * giving the same squares a new last square. The rotations continue until
+     * the last square can be extended onto an unvisited square, or until the
+     * complete tour closes.
+     *
+     * Boards with an odd number of squares have no closed tours, since every
+     * move changes the colour of the Knight-piece's square; nor do boards
+     * toured by a Leaper whose moves keep the colour, which can't visit
+     * every square at all.
+     *
+     * @param budget    The maximum number of moves and rotations to spend on
+     *                  the search
+     * @return      true, if the tour is complete and closed; false if the
+     *              budget ran out or no closed tour exists
+     */
+    public boolean solveClosed( long budget ) {
+        if( (_board.getSquareCount() % 2 != 0) ||
+                !_board.getLeaper().changesColour() )
+            return false;
+
+        if(! SolverMetrics.ENABLED )
+            return close( budget );
+
+        long start = System.nanoTime();
+        boolean complete = close( budget );
+
+        SolverMetrics.endPhase( SolverMetrics.Phase.CLOSE, start );
+        SolverMetrics.recordTour( _board, startSquare, complete,
+                                  System.nanoTime() - start );
+        return complete;
+    }
+
+    /**
+     * Run the search of solveClosed().
+     *
+     * @param budget    The maximum number of moves and rotations to spend on
+     *                  the search
+     * @return      true, if the tour is complete and closed; false otherwise
+     */
+    private boolean close( long budget ) {
+        closed = true;
+
+        // Greedy moves first, while they last
+        while( (budget > 0) && (nextSquare() >= 0) )
+            budget--;
+
+        if( isClosed() )
+            return true;
+
+        // Any tried moves belong to paths the rotations are about to undo
+        _tried = null;
+
+        int lastMove = _board.getSquareCount() - 1;
+        int[] path = new int[lastMove + 1];
+        for( int square = 0; square < path.length; square++ ) {
+            int move = _visit.get( square );
+            if( move != Constants.EMPTY_SLOT )
+                path[move] = square;
+        }
+
+        long rotations = 0;     // Rotations of the complete path
+        while( (numberOfMoves < lastMove) ||
+                !_table.isMove(path[lastMove], path[0]) ) {
+            if( budget-- <= 0 )
+                return abandon( path );
+
+            int destination = (numberOfMoves < lastMove) ?
+                    chooseMove( path[numberOfMoves], 0 ) : -1;
+
+            // Extend the path onto an unvisited square...
+            if( destination >= 0 ) {
+                _knight.moveToSquare( destination );
+                numberOfMoves++;
+                visit( destination );
+                path[numberOfMoves] = destination;
+
+                if( SolverMetrics.ENABLED )
+                    SolverMetrics.MOVES_MADE.increment();
+                continue;
+            }
+
+            // ...or rotate it to end somewhere else. A cycle can start
+            // anywhere, so a complete path is closed onto whichever of its
+            // ends has more neighbours, switching ends now and then so the
+            // rotations don't keep circling one corner of the board
+            if( (numberOfMoves == lastMove) &&
+                    (((rotations == 0) && (_table.getDegree(path[0]) <
+                                        _table.getDegree(path[lastMove]))) ||
+                     (rotations % SWITCH_PERIOD == SWITCH_PERIOD - 1)) )
+                reverse( path, 0 );
+
+            if(! rotate(path) )
+                return abandon( path );
+            if( numberOfMoves == lastMove )
+                rotations++;
+        }
+
+        // Number the cycle from the starting square again
+        int offset = _visit.get( startSquare );
+        for( int move = 0; move <= lastMove; move++ ) {
+            int square = path[(move + offset) % path.length];
+
+            _visit.set( square, move );
+            if( move == lastMove )
+                _knight = new Knight( _board, _table.getX(square),
+                                      _table.getY(square) );
+        }
+
+        return true;
+    }
+
+    /**
+     * Give up closing a path, leaving it numbered from the starting square.
+     *
+     * @param path      The square reached on each move
+     * @return      false, as the path didn't close
+     */
+    private boolean abandon( int[] path ) {
+        // Only complete paths are ever turned around
+        if( path[0] != startSquare )
+            reverse( path, 0 );
+
+        return false;
+    }
+
+    /**
+     * Perform a Posa rotation on the path of the tour.
+     *
+     * The last square is joined to an earlier square of the path, and the
+     * squares in between are walked in reverse. Rotations giving a last
+     * square that can be extended, or that closes a complete tour, are
+     * preferred; otherwise one is picked at random.
+     *
+     * @param path      The square reached on each move, kept up to date
+     * @return      true, if the path was rotated; false if the last square
+     *              has no earlier neighbour to rotate around
+     */
+    private boolean rotate( int[] path ) {
+        int current = path[numberOfMoves];
+        int pivot = -1;
+        int candidates = 0;
+        long closest = getDistance( current, path[0] );
+        long closestStart = closest;
+        int closer = -1;
+
+        if( _random == null )
+            _random = new Random( startSquare );
+
+        for( int mask = _table.getMoveMask(current); mask != 0;
+                mask &= mask - 1 ) {
+            int move = _visit.get( current +
+                    _table.getDelta(Integer.numberOfTrailingZeros(mask)) );
+
+            // Joining the square just before the last changes nothing
+            if( (move == Constants.EMPTY_SLOT) || (move >= numberOfMoves - 1) )
+                continue;
+
+            int end = path[move + 1];
+            if( (getNumberOfMoves(end) > 0) || (isComplete() &&
+                    _table.isMove(end, path[0])) ) {
+                pivot = move;
+                break;
+            }
+
+            // A complete tour closes once its end reaches the start, so
+            // head for the start while that gets any closer
+            long distance = getDistance( end, path[0] );
+            if( isComplete() && (distance < closest) ) {
+                closest = distance;
+                closer = move;
+            }
+
+            // Pick uniformly among the plain rotations
+            if( _random.nextInt(++candidates) == 0 )
+                pivot = move;
+        }
+
+        if( (closer >= 0) && (pivot >= 0) && (closestStart > NEAR_START) &&
+                (getNumberOfMoves(path[pivot + 1]) == 0) &&
+                !_table.isMove(path[pivot + 1], path[0]) )
+            pivot = closer;
+
+        if( pivot < 0 )
+            return false;
+
+        reverse( path, pivot + 1 );
+
+        if( SolverMetrics.ENABLED )
+            SolverMetrics.ROTATIONS.increment();
+        return true;
+    }
+
+    /**
+     * Walk the end of the path in reverse, from a given move onwards.
+     *
+     * @param path      The square reached on each move, kept up to date
+     * @param first     The first move to reverse
+     */
+    private void reverse( int[] path, int first ) {
+        for( int i = first, j = numberOfMoves; i < j; i++, j-- ) {
+            int square = path[i];
+            path[i] = path[j];
+            path[j] = square;
+        }
+        for( int move = first; move <= numberOfMoves; move++ )
+            _visit.set( path[move], move );
+
+        // The new last square is no single move away from the old one
+        _knight = new Knight( _board, _table.getX(path[numberOfMoves]),
+                              _table.getY(path[numberOfMoves]) );
     }
 }
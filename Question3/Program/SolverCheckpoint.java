@@ -0,0 +1,696 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
+/**
+ * Keeps a running Solver's search in a log on disk, so that a run which dies
+ * can be resumed where it left off rather than started over.
+ *
+ * The search only ever adds moves to the end of its path or takes them back
+ * from it, so all that changes between two checkpoints is the path above its
+ * low-water mark, the fewest moves it was down to in the meantime. Each
+ * checkpoint appends just that part: the squares from the low-water mark up
+ * to the Knight-piece, and the moves already tried from each of them. The
+ * Solver copies them out, which is all the pause it takes, and a background
+ * thread writes them; while a write is still in progress, checkpoints are
+ * skipped and the dirty part of the path simply grows until the next one.
+ *
+ * Replaying the records in order rebuilds the path of the last one, and with
+ * it every bit of the search's state, so a resumed Solver goes on to make
+ * exactly the moves the original would have. A record cut short by a crash
+ * fails its checksum and is dropped along with anything after it. Once the
+ * log grows past COMPACTION_RATIO times the size of the path itself, it is
+ * rewritten as a single record and swapped in for the old one. The writer
+ * keeps its own copy of the logged path, replaying each record into it as it
+ * writes it, so compacting never reads the log back.
+ *
+ * The log is a header of nine big-endian ints,
+ *
+ *      magic number ("KNC1"), format version, board width, board height,
+ *      the Leaper's short and long legs, starting square, final square (or
+ *      -1), and tie-breaking rule
+ *
+ * followed by the records: the low-water mark and number of squares (ints),
+ * the budget spent so far (a long), the squares (ints), the tried moves of
+ * each (bytes), and a CRC-32 of all of it (an int).
+ *
+ * Only solve() takes checkpoints; solveClosed() rewrites its whole path as it
+ * rotates it, so there is nothing incremental to keep.
+ *
+ * @author Darren M.
+ */
+public class SolverCheckpoint implements Closeable {
+    public static final int MAGIC = 0x4B4E4331;     // "KNC1"
+    public static final int VERSION = 1;            // Current format version
+    public static final long DEFAULT_PERIOD = 1 << 22;  // Budget spent between
+                                                        // two checkpoints
+    public static final int COMPACTION_RATIO = 2;   // Log size, as a multiple
+                                                    // of the path's, that is
+                                                    // compacted
+    private static final int HEADER_SIZE = 36;      // Bytes before the records
+    private static final int RECORD_OVERHEAD = 20;  // Bytes of a record besides
+                                                    // its squares
+    private static final int BUFFER_SIZE = 1 << 16; // Bytes per write
+
+    private final File _file;           // The log
+    private final long period;          // Budget spent between checkpoints
+    private final ExecutorService _writer;  // Writes the log, in order
+    private final AtomicInteger _pending;   // Records not written yet
+    private FileChannel channel;        // The open log, owned by the writer
+    private long logBytes;              // Size of the log
+    private Log _logged;                // The search as logged so far, owned
+                                        // by the writer
+    private volatile IOException failure;   // The first write that failed
+
+    /**
+     * SolverCheckpoint logs a Solver's search to a file, once it is attached
+     * with Solver.setCheckpoint().
+     *
+     * @param file      The log, which is replaced
+     * @param period    Budget the Solver spends between two checkpoints
+     */
+    public SolverCheckpoint( File file, long period ) {
+        if( period <= 0 )
+            throw new IllegalArgumentException("Checkpoint period must be " +
+                                                "positive: " + period );
+
+        _file = file;
+        this.period = period;
+        _pending = new AtomicInteger();
+        _writer = Executors.newSingleThreadExecutor( new ThreadFactory() {
+            @Override
+            public Thread newThread( Runnable task ) {
+                Thread thread = new Thread( task, "checkpoint" );
+                thread.setDaemon( true );
+                return thread;
+            }
+        } );
+    }
+
+    /**
+     * Resume the search kept in a log, on a new Solver which carries on
+     * logging to it.
+     *
+     * The Solver has made the moves of the last checkpoint, and has spent
+     * the same budget; solve() then continues the search exactly as the
+     * logged one would have, given the rest of its budget.
+     *
+     * @param file      The log
+     * @param period    Budget to spend between two checkpoints from now on
+     * @param offHeap   Whether to keep the visits outside of the Java heap
+     * @return      The resumed Solver
+     * @throws IOException  If the log couldn't be read or is malformed
+     */
+    public static Solver resume( File file, long period, boolean offHeap )
+            throws IOException {
+        SolverCheckpoint checkpoint = new SolverCheckpoint( file, period );
+        FileChannel channel = FileChannel.open( file.toPath(),
+                StandardOpenOption.READ, StandardOpenOption.WRITE );
+        Log log;
+
+        try {
+            log = readLog( channel, file.toString() );
+
+            // Drop whatever a crash left half written
+            channel.truncate( log.size );
+            channel.position( log.size );
+        }
+        catch( IOException e ) {
+            channel.close();
+            throw e;
+        }
+
+        Board board = log.board;
+        VisitBoard visits = offHeap ?
+                new DirectVisitBoard( board.getSquareCount() ) :
+                new ArrayVisitBoard( board.getSquareCount() );
+        Solver solver = new Solver( board, visits, board.getX(log.path[0]),
+                                    board.getY(log.path[0]) );
+        solver.setTieBreak( log.tieBreak );
+        if( log.finalSquare >= 0 )
+            solver.setFinalSquare( board.getX(log.finalSquare),
+                                   board.getY(log.finalSquare) );
+
+        checkpoint.channel = channel;
+        checkpoint.logBytes = log.size;
+        checkpoint._logged = log.copy();
+        solver.restore( log.path, log.tried, log.length, log.spent,
+                        checkpoint );
+        return solver;
+    }
+
+    /**
+     * Get the budget the Solver spends between two checkpoints
+     *
+     * @return      The checkpoint period
+     */
+    public long getPeriod() {
+        return period;
+    }
+
+    /**
+     * Check if records are still waiting to be written
+     *
+     * @return      true, if a checkpoint would have to wait for the writer
+     */
+    public boolean isBusy() {
+        return _pending.get() > 0;
+    }
+
+    /**
+     * Start a new log for a Solver's search, replacing anything logged so
+     * far; called by Solver.setCheckpoint(), and when solve() starts over.
+     *
+     * @param board         Geometry of the toured board
+     * @param start         The square the tour started on
+     * @param finalSquare   The square the tour must end on, or -1
+     * @param tieBreak      The Solver's tie-breaking rule
+     */
+    void start( final Board board, final int start, final int finalSquare,
+                final TieBreak tieBreak ) {
+        submit( new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    // A Solver starting its search over starts a new log
+                    if( channel != null )
+                        channel.close();
+
+                    channel = FileChannel.open( _file.toPath(),
+                            StandardOpenOption.CREATE,
+                            StandardOpenOption.READ,
+                            StandardOpenOption.WRITE,
+                            StandardOpenOption.TRUNCATE_EXISTING );
+                    writeHeader( channel, board, start, finalSquare,
+                                 tieBreak );
+                    logBytes = HEADER_SIZE;
+
+                    _logged = new Log();
+                    _logged.board = board;
+                    _logged.tieBreak = tieBreak;
+                    _logged.finalSquare = finalSquare;
+                    _logged.path = new int[board.getSquareCount()];
+                    _logged.tried = new byte[board.getSquareCount()];
+                    _logged.path[0] = start;
+                    _logged.length = 1;
+                    _logged.size = HEADER_SIZE;
+                }
+                catch( IOException e ) {
+                    fail( e );
+                }
+            }
+        } );
+    }
+
+    /**
+     * Append the path above the low-water mark to the log, in the background;
+     * called by the Solver, which hands the arrays over.
+     *
+     * @param low       The low-water mark: the move of the first square
+     * @param squares   The square reached on each move from the low-water mark
+     * @param tried     The moves already tried from each of those squares
+     * @param spent     The budget the Solver has spent so far
+     */
+    void append( final int low, final int[] squares, final byte[] tried,
+                 final long spent ) {
+        submit( new Runnable() {
+            @Override
+            public void run() {
+                if( (failure != null) || (channel == null) )
+                    return;
+
+                try {
+                    long size = writeRecord( channel, low, squares, tried,
+                                             squares.length, spent );
+                    channel.force( false );
+                    logBytes += size;
+                    _logged.replay( low, squares, tried, squares.length,
+                                    spent );
+
+                    // Keep the log within a multiple of the path's own size
+                    if( logBytes > COMPACTION_RATIO * (HEADER_SIZE +
+                            RECORD_OVERHEAD + 5L * _logged.length) )
+                        compact();
+                }
+                catch( IOException e ) {
+                    fail( e );
+                }
+            }
+        } );
+    }
+
+    /**
+     * Wait for every record to be written, and close the log.
+     *
+     * @throws IOException  If any record couldn't be written
+     */
+    @Override
+    public void close() throws IOException {
+        _writer.shutdown();
+
+        try {
+            while(! _writer.awaitTermination(1, TimeUnit.SECONDS) )
+                ;
+        }
+        catch( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new IOException( "Interrupted while writing " + _file, e );
+        }
+
+        if( channel != null )
+            channel.close();
+        if( failure != null )
+            throw failure;
+    }
+
+    /**
+     * Run a task on the writer, counting it as pending until it is done.
+     *
+     * @param task      The task to run
+     */
+    private void submit( final Runnable task ) {
+        _pending.incrementAndGet();
+        _writer.execute( new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    task.run();
+                }
+                finally {
+                    _pending.decrementAndGet();
+                }
+            }
+        } );
+    }
+
+    /**
+     * Remember the first failed write; later records are dropped, since the
+     * log can't be replayed past the failure anyway.
+     *
+     * @param e     The failure
+     */
+    private void fail( IOException e ) {
+        if( failure == null )
+            failure = e;
+    }
+
+    /**
+     * Rewrite the log as a single record of the logged path, replacing the
+     * old one only once the new one is safely on disk.
+     *
+     * @throws IOException  If the log couldn't be rewritten
+     */
+    private void compact() throws IOException {
+        Log log = _logged;
+        File temporary = new File( _file.getPath() + ".tmp" );
+        FileChannel compacted = FileChannel.open( temporary.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING );
+
+        try {
+            writeHeader( compacted, log.board, log.path[0], log.finalSquare,
+                         log.tieBreak );
+            writeRecord( compacted, 0, log.path, log.tried, log.length,
+                         log.spent );
+            compacted.force( true );
+        }
+        finally {
+            compacted.close();
+        }
+
+        channel.close();
+        Files.move( temporary.toPath(), _file.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE );
+
+        channel = FileChannel.open( _file.toPath(), StandardOpenOption.READ,
+                                    StandardOpenOption.WRITE );
+        logBytes = channel.size();
+        channel.position( logBytes );
+    }
+
+    /**
+     * Write the header of a log at the channel's position.
+     *
+     * @param channel       The log
+     * @param board         Geometry of the toured board
+     * @param start         The square the tour started on
+     * @param finalSquare   The square the tour must end on, or -1
+     * @param tieBreak      The Solver's tie-breaking rule
+     * @throws IOException  If the header couldn't be written
+     */
+    private static void writeHeader( FileChannel channel, Board board,
+                                     int start, int finalSquare,
+                                     TieBreak tieBreak ) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate( HEADER_SIZE );
+
+        header.putInt( MAGIC ).putInt( VERSION )
+              .putInt( board.getWidth() ).putInt( board.getHeight() )
+              .putInt( board.getLeaper().getShortLeg() )
+              .putInt( board.getLeaper().getLongLeg() )
+              .putInt( start ).putInt( finalSquare )
+              .putInt( tieBreak.ordinal() );
+        drain( channel, header, null );
+    }
+
+    /**
+     * Write a record at the channel's position.
+     *
+     * @param channel   The log
+     * @param low       The move of the first square
+     * @param squares   The square reached on each move from the first
+     * @param tried     The moves already tried from each of those squares
+     * @param count     The number of squares to write
+     * @param spent     The budget the Solver has spent so far
+     * @return      The size of the record, in bytes
+     * @throws IOException  If the record couldn't be written
+     */
+    private static long writeRecord( FileChannel channel, int low,
+                                     int[] squares, byte[] tried, int count,
+                                     long spent ) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate( BUFFER_SIZE );
+        CRC32 checksum = new CRC32();
+
+        buffer.putInt( low ).putInt( count ).putLong( spent );
+
+        // Squares go in as whole runs of ints, as many as the buffer holds
+        for( int i = 0; i < count; ) {
+            int run = Math.min( count - i, buffer.remaining() / 4 );
+            if( run == 0 ) {
+                drain( channel, buffer, checksum );
+                continue;
+            }
+
+            buffer.asIntBuffer().put( squares, i, run );
+            buffer.position( buffer.position() + 4 * run );
+            i += run;
+        }
+
+        for( int i = 0; i < count; ) {
+            int run = Math.min( count - i, buffer.remaining() );
+            if( run == 0 ) {
+                drain( channel, buffer, checksum );
+                continue;
+            }
+
+            buffer.put( tried, i, run );
+            i += run;
+        }
+
+        drain( channel, buffer, checksum );
+        buffer.putInt( (int) checksum.getValue() );
+        drain( channel, buffer, null );
+
+        return RECORD_OVERHEAD + 5L * count;
+    }
+
+    /**
+     * Write out a filled buffer at the channel's position, and empty it.
+     *
+     * @param channel   The log
+     * @param buffer    The bytes to write, up to its position
+     * @param checksum  The checksum to add the bytes to, or null
+     * @throws IOException  If the bytes couldn't be written
+     */
+    private static void drain( FileChannel channel, ByteBuffer buffer,
+                               CRC32 checksum ) throws IOException {
+        buffer.flip();
+        if( checksum != null )
+            checksum.update( buffer.duplicate() );
+
+        while( buffer.hasRemaining() )
+            channel.write( buffer );
+        buffer.clear();
+    }
+
+    /**
+     * Read a log from the channel's position and replay its records.
+     *
+     * @param channel   The log
+     * @param source    Where the log comes from, for error messages
+     * @return      The search as of the last whole record
+     * @throws IOException  If the log couldn't be read, or is malformed
+     */
+    private static Log readLog( FileChannel channel, String source )
+            throws IOException {
+        LogReader in = new LogReader( channel );
+        Log log = new Log();
+
+        if( !in.require(HEADER_SIZE) || (in.buffer.getInt() != MAGIC) )
+            throw new IOException( source + " is not a checkpoint log" );
+        int version = in.buffer.getInt();
+        if( version != VERSION )
+            throw new IOException( source + " has unsupported version " +
+                                   version );
+
+        try {
+            int width = in.buffer.getInt();
+            int height = in.buffer.getInt();
+            int shortLeg = in.buffer.getInt();
+            int longLeg = in.buffer.getInt();
+            int start = in.buffer.getInt();
+            log.finalSquare = in.buffer.getInt();
+            log.tieBreak = TieBreak.values()[in.buffer.getInt()];
+            log.board = new Board( width, height,
+                                   new Leaper(shortLeg, longLeg) );
+            if(! log.board.contains(log.board.getX(start),
+                                    log.board.getY(start)) )
+                throw new IOException( source + " has a malformed header" );
+
+            log.path = new int[log.board.getSquareCount()];
+            log.tried = new byte[log.board.getSquareCount()];
+            log.path[0] = start;
+            log.length = 1;
+        }
+        catch( RuntimeException e ) {
+            throw new IOException( source + " has a malformed header", e );
+        }
+
+        log.size = HEADER_SIZE;
+        while( readRecord(in, log) )
+            ;
+
+        validate( log, source );
+        return log;
+    }
+
+    /**
+     * Read the next record of a log and replay it.
+     *
+     * @param in        The log, past the records replayed so far
+     * @param log       The search so far
+     * @return      true, if a whole record was replayed; false at the end of
+     *              the log, or at a record cut short or corrupted
+     * @throws IOException  If the log couldn't be read
+     */
+    private static boolean readRecord( LogReader in, Log log )
+            throws IOException {
+        in.startChecksum();
+        if(! in.require(RECORD_OVERHEAD - 4) )
+            return false;
+
+        int low = in.buffer.getInt();
+        int count = in.buffer.getInt();
+        long spent = in.buffer.getLong();
+
+        // The path can only be taken back to a move it has reached
+        if( (low < 0) || (low >= log.length) || (count <= 0) ||
+                (count > log.path.length - low) )
+            return false;
+
+        int[] squares = new int[count];
+        byte[] tried = new byte[count];
+
+        for( int i = 0; i < count; ) {
+            if(! in.require(4) )
+                return false;
+
+            int run = Math.min( count - i, in.buffer.remaining() / 4 );
+            in.buffer.asIntBuffer().get( squares, i, run );
+            in.buffer.position( in.buffer.position() + 4 * run );
+            i += run;
+        }
+
+        for( int i = 0; i < count; ) {
+            if(! in.require(1) )
+                return false;
+
+            int run = Math.min( count - i, in.buffer.remaining() );
+            in.buffer.get( tried, i, run );
+            i += run;
+        }
+
+        int checksum = in.getChecksum();
+        if( !in.require(4) || (in.buffer.getInt() != checksum) )
+            return false;
+
+        log.replay( low, squares, tried, count, spent );
+        return true;
+    }
+
+    /**
+     * Check that a replayed path is one the Solver could have taken.
+     *
+     * @param log       The replayed search
+     * @param source    Where the log comes from, for error messages
+     * @throws IOException  If the path leaves the board, revisits a square
+     *                      or makes a move the Leaper can't
+     */
+    private static void validate( Log log, String source )
+            throws IOException {
+        MoveTable table = log.board.getMoveTable();
+        boolean[] visited = new boolean[log.path.length];
+
+        for( int move = 0; move < log.length; move++ ) {
+            int square = log.path[move];
+
+            if( (square < 0) || (square >= visited.length) ||
+                    visited[square] ||
+                    ((move > 0) && !table.isMove(log.path[move - 1], square)) )
+                throw new IOException( source + " holds an impossible path " +
+                                       "at move " + move );
+            visited[square] = true;
+        }
+
+        if( (log.finalSquare >= visited.length) ||
+                ((log.finalSquare >= 0) && visited[log.finalSquare] &&
+                 (log.length < visited.length)) )
+            throw new IOException( source + " has a malformed header" );
+    }
+
+    /**
+     * A log read back and replayed.
+     */
+    private static final class Log {
+        Board board;            // Geometry of the toured board
+        TieBreak tieBreak;      // The Solver's tie-breaking rule
+        int finalSquare;        // Square the tour must end on, or -1
+        int[] path;             // The square reached on each move
+        byte[] tried;           // Moves already tried from each square
+        int length;             // Squares on the path
+        long spent;             // Budget spent so far
+        long size;              // Bytes of the header and whole records
+
+        /**
+         * Apply a record to the search.
+         *
+         * @param low       The move of the record's first square
+         * @param squares   The square reached on each move from it
+         * @param tried     The moves already tried from each of those squares
+         * @param count     The number of squares in the record
+         * @param spent     The budget spent as of the record
+         */
+        void replay( int low, int[] squares, byte[] tried, int count,
+                     long spent ) {
+            System.arraycopy( squares, 0, path, low, count );
+            System.arraycopy( tried, 0, this.tried, low, count );
+            length = low + count;
+            this.spent = spent;
+            size += RECORD_OVERHEAD + 5L * count;
+        }
+
+        /**
+         * Copy the search, so that its path can be handed over elsewhere
+         *
+         * @return      A copy sharing nothing but the board
+         */
+        Log copy() {
+            Log result = new Log();
+
+            result.board = board;
+            result.tieBreak = tieBreak;
+            result.finalSquare = finalSquare;
+            result.path = Arrays.copyOf( path, path.length );
+            result.tried = Arrays.copyOf( tried, tried.length );
+            result.length = length;
+            result.spent = spent;
+            result.size = size;
+            return result;
+        }
+    }
+
+    /**
+     * Reads a log through a buffer, keeping a checksum of what it reads.
+     */
+    private static final class LogReader {
+        final ByteBuffer buffer;                // Bytes read, not yet used
+        private final FileChannel _channel;     // The log
+        private final CRC32 _checksum;          // Checksum of the used bytes
+        private int checked;                    // Buffer position up to which
+                                                // the checksum is taken
+
+        LogReader( FileChannel channel ) {
+            _channel = channel;
+            _checksum = new CRC32();
+            buffer = ByteBuffer.allocate( BUFFER_SIZE );
+            buffer.flip();
+        }
+
+        /**
+         * Make sure the buffer holds at least the given number of bytes
+         *
+         * @param bytes     The bytes needed, at most BUFFER_SIZE
+         * @return      true, if they were read; false at the end of the log
+         * @throws IOException  If the log couldn't be read
+         */
+        boolean require( int bytes ) throws IOException {
+            if( buffer.remaining() >= bytes )
+                return true;
+
+            updateChecksum();
+            buffer.compact();
+            checked = 0;
+            while( buffer.position() < bytes ) {
+                if( _channel.read(buffer) < 0 ) {
+                    buffer.flip();
+                    return false;
+                }
+            }
+
+            buffer.flip();
+            return true;
+        }
+
+        /**
+         * Start a new checksum from the next byte used.
+         */
+        void startChecksum() {
+            updateChecksum();
+            _checksum.reset();
+        }
+
+        /**
+         * Get the checksum of the bytes used since startChecksum()
+         *
+         * @return      The CRC-32 of the bytes
+         */
+        int getChecksum() {
+            updateChecksum();
+            return (int) _checksum.getValue();
+        }
+
+        /**
+         * Add the bytes used since the last update to the checksum.
+         */
+        private void updateChecksum() {
+            ByteBuffer used = buffer.duplicate();
+
+            used.limit( buffer.position() ).position( checked );
+            _checksum.update( used );
+            checked = buffer.position();
+        }
+    }
+}
@@ -0,0 +1,254 @@
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Counters and timers of where the solvers spend their work.
+ *
+ * Metrics are off unless the "knight.metrics" system property is "true" when
+ * the class is first used. ENABLED is a static final field, so with metrics
+ * off the JIT compiler removes every "if( SolverMetrics.ENABLED )" block
+ * outright and the hot paths pay nothing. With metrics on, counters are
+ * LongAdders, which spread concurrent increments over separate cells
+ * instead of contending for a single one.
+ *
+ * The metrics can be read over JMX once register() has been called, under
+ * the name given by OBJECT_NAME, or printed with dump().
+ *
+ * @author Darren M.
+ */
+public class SolverMetrics implements SolverMetricsMBean {
+    // Whether metrics are collected at all
+    public static final boolean ENABLED =
+            Boolean.getBoolean( "knight.metrics" );
+    public static final String OBJECT_NAME = "knight:type=SolverMetrics";
+
+    /**
+     * The phases whose time is measured.
+     */
+    public enum Phase {
+        /** Solver.solve() and BitboardSolver.solve() */
+        SOLVE,
+        /** Solver.solveClosed() */
+        CLOSE,
+        /** Planning the blocks of a BlockSolver */
+        PLAN,
+        /** Filling the blocks of a BlockSolver */
+        FILL,
+        /** Writing a tour with a TourWriter */
+        WRITE
+    }
+
+    // Counters, as described by SolverMetricsMBean
+    public static final LongAdder MOVES_GENERATED = new LongAdder();
+    public static final LongAdder CANDIDATES = new LongAdder();
+    public static final LongAdder MOVES_MADE = new LongAdder();
+    public static final LongAdder TIES = new LongAdder();
+    public static final LongAdder DEAD_ENDS = new LongAdder();
+    public static final LongAdder RETREATS = new LongAdder();
+    public static final LongAdder ROTATIONS = new LongAdder();
+    public static final LongAdder TOURS = new LongAdder();
+    public static final LongAdder COMPLETE_TOURS = new LongAdder();
+
+    // Time spent in each phase, indexed by the Phase's ordinal
+    private static final LongAdder[] PHASE_NANOS =
+            new LongAdder[Phase.values().length];
+    static {
+        for( int i = 0; i < PHASE_NANOS.length; i++ )
+            PHASE_NANOS[i] = new LongAdder();
+    }
+
+    private static final SolverMetrics INSTANCE = new SolverMetrics();
+
+    private static volatile long slowestNanos;  // Time of the slowest tour
+    private static String slowestTour;      // Description of the slowest tour
+    private static String lastFailedTour;   // Description of the last failure
+
+    /**
+     * SolverMetrics only exists as the JMX view of the static metrics.
+     */
+    private SolverMetrics() {
+    }
+
+    /**
+     * Publish the metrics on the platform MBean server.
+     *
+     * @throws JMException  If the metrics couldn't be registered
+     */
+    public static synchronized void register() throws JMException {
+        ObjectName name = new ObjectName( OBJECT_NAME );
+
+        if(! ManagementFactory.getPlatformMBeanServer().isRegistered(name) )
+            ManagementFactory.getPlatformMBeanServer()
+                             .registerMBean( INSTANCE, name );
+    }
+
+    /**
+     * Add the time since a phase started to the phase's total.
+     *
+     * @param phase     The phase which ended
+     * @param start     System.nanoTime() when the phase started
+     */
+    public static void endPhase( Phase phase, long start ) {
+        PHASE_NANOS[phase.ordinal()].add( System.nanoTime() - start );
+    }
+
+    /**
+     * Count a finished tour, remembering it if it was the slowest so far or
+     * if it didn't complete.
+     *
+     * @param board     Geometry of the toured board
+     * @param start     The tour's starting square
+     * @param complete  Whether the tour visited every square
+     * @param nanos     The time spent on the tour
+     */
+    public static void recordTour( Board board, int start, boolean complete,
+                                   long nanos ) {
+        TOURS.increment();
+        if( complete )
+            COMPLETE_TOURS.increment();
+
+        // Descriptions are only built for the rare tours worth keeping
+        if( complete && (nanos <= slowestNanos) )
+            return;
+
+        synchronized( SolverMetrics.class ) {
+            if( nanos > slowestNanos ) {
+                slowestNanos = nanos;
+                slowestTour = describe( board, start, nanos );
+            }
+            if(! complete )
+                lastFailedTour = describe( board, start, nanos );
+        }
+    }
+
+    /**
+     * Describe a tour for the slowest and failed tour records
+     *
+     * @param board     Geometry of the toured board
+     * @param start     The tour's starting square
+     * @param nanos     The time spent on the tour
+     * @return      The description of the tour
+     */
+    private static String describe( Board board, int start, long nanos ) {
+        return board + " from (" + board.getX(start) + "," +
+                board.getY(start) + ") in " + (nanos / 1000) + "us";
+    }
+
+    /**
+     * Print every counter and timer.
+     *
+     * @param out       The stream to print to
+     */
+    public static void dump( PrintStream out ) {
+        out.println("metrics: generated " + MOVES_GENERATED.sum() +
+                    ", candidates " + CANDIDATES.sum() +
+                    ", moves " + MOVES_MADE.sum() +
+                    ", ties " + TIES.sum() +
+                    ", dead-ends " + DEAD_ENDS.sum() +
+                    ", retreats " + RETREATS.sum() +
+                    ", rotations " + ROTATIONS.sum() );
+        out.println("metrics: tours " + TOURS.sum() + " (" +
+                    COMPLETE_TOURS.sum() + " complete), time " +
+                    INSTANCE.getPhaseTimes() );
+
+        synchronized( SolverMetrics.class ) {
+            if( slowestTour != null )
+                out.println("metrics: slowest tour " + slowestTour );
+            if( lastFailedTour != null )
+                out.println("metrics: last failed tour " + lastFailedTour );
+        }
+    }
+
+    @Override
+    public long getMovesGenerated() {
+        return MOVES_GENERATED.sum();
+    }
+
+    @Override
+    public long getCandidates() {
+        return CANDIDATES.sum();
+    }
+
+    @Override
+    public long getMovesMade() {
+        return MOVES_MADE.sum();
+    }
+
+    @Override
+    public long getTies() {
+        return TIES.sum();
+    }
+
+    @Override
+    public long getDeadEnds() {
+        return DEAD_ENDS.sum();
+    }
+
+    @Override
+    public long getRetreats() {
+        return RETREATS.sum();
+    }
+
+    @Override
+    public long getRotations() {
+        return ROTATIONS.sum();
+    }
+
+    @Override
+    public long getTours() {
+        return TOURS.sum();
+    }
+
+    @Override
+    public long getCompleteTours() {
+        return COMPLETE_TOURS.sum();
+    }
+
+    @Override
+    public String getPhaseTimes() {
+        StringBuilder result = new StringBuilder();
+
+        for( Phase phase : Phase.values() ) {
+            if( result.length() > 0 )
+                result.append( ", " );
+            result.append( phase.name().toLowerCase() ).append( '=' )
+                  .append( PHASE_NANOS[phase.ordinal()].sum() / 1000000 )
+                  .append( "ms" );
+        }
+
+        return result.toString();
+    }
+
+    @Override
+    public String getSlowestTour() {
+        synchronized( SolverMetrics.class ) {
+            return slowestTour;
+        }
+    }
+
+    @Override
+    public String getLastFailedTour() {
+        synchronized( SolverMetrics.class ) {
+            return lastFailedTour;
+        }
+    }
+
+    @Override
+    public void reset() {
+        for( LongAdder counter : new LongAdder[] { MOVES_GENERATED,
+                CANDIDATES, MOVES_MADE, TIES, DEAD_ENDS, RETREATS, ROTATIONS,
+                TOURS, COMPLETE_TOURS } )
+            counter.reset();
+        for( LongAdder nanos : PHASE_NANOS )
+            nanos.reset();
+
+        synchronized( SolverMetrics.class ) {
+            slowestNanos = 0;
+            slowestTour = null;
+            lastFailedTour = null;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/**
+ * The management interface of SolverMetrics, as seen over JMX.
+ *
+ * @author Darren M.
+ */
+public interface SolverMetricsMBean {
+    /**
+     * Get the moves listed by Knight.getMovesFromPosition()
+     *
+     * @return      The number of moves generated
+     */
+    long getMovesGenerated();
+
+    /**
+     * Get the unvisited moves found by the Solver's filter
+     *
+     * @return      The number of candidate moves
+     */
+    long getCandidates();
+
+    /**
+     * Get the moves made by the solvers
+     *
+     * @return      The number of moves made
+     */
+    long getMovesMade();
+
+    /**
+     * Get the times a move tied with the best move so far
+     *
+     * @return      The number of ties
+     */
+    long getTies();
+
+    /**
+     * Get the times a solver found no move to make
+     *
+     * @return      The number of dead-ends
+     */
+    long getDeadEnds();
+
+    /**
+     * Get the moves taken back while backtracking
+     *
+     * @return      The number of retreats
+     */
+    long getRetreats();
+
+    /**
+     * Get the Posa rotations made while closing tours
+     *
+     * @return      The number of rotations
+     */
+    long getRotations();
+
+    /**
+     * Get the tours solved
+     *
+     * @return      The number of tours
+     */
+    long getTours();
+
+    /**
+     * Get the tours which visited every square
+     *
+     * @return      The number of complete tours
+     */
+    long getCompleteTours();
+
+    /**
+     * Get the time spent in each phase, one "phase=milliseconds" per entry
+     *
+     * @return      The time spent per phase
+     */
+    String getPhaseTimes();
+
+    /**
+     * Describe the slowest tour solved
+     *
+     * @return      The board, start and time of the tour, or null
+     */
+    String getSlowestTour();
+
+    /**
+     * Describe the last tour that didn't complete
+     *
+     * @return      The board, start and time of the tour, or null
+     */
+    String getLastFailedTour();
+
+    /**
+     * Set every counter and timer back to zero.
+     */
+    void reset();
+}
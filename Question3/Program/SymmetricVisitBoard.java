@@ -0,0 +1,106 @@
+/**
+ * A read-only view of a VisitBoard through one of the board's symmetries.
+ *
+ * A rectangle has eight symmetries: the identity, mirroring left to right,
+ * mirroring top to bottom, rotating by half a turn, and each of those followed
+ * by swapping the x- and y-axes (which turns a WxH board into an HxW one).
+ * The Knight-piece's moves are the same under all of them, so a tour mirrored
+ * or turned is still a tour. The view maps every square it is asked about back
+ * onto the source board and reads the move number there; nothing is copied.
+ *
+ * A symmetry is numbered by three bits, applied in this order:
+ *
+ *      MIRROR_X    x becomes width - 1 - x
+ *      MIRROR_Y    y becomes height - 1 - y
+ *      SWAP        x and y trade places
+ *
+ * @author Darren M.
+ */
+public class SymmetricVisitBoard implements VisitBoard {
+    public static final int IDENTITY = 0;   // Leaves every square in place
+    public static final int MIRROR_X = 1;   // Mirrors the x-coordinate
+    public static final int MIRROR_Y = 2;   // Mirrors the y-coordinate
+    public static final int SWAP = 4;       // Swaps the two coordinates
+    public static final int SYMMETRIES = 8; // Number of symmetries
+
+    private final VisitBoard _source;   // The visits being viewed
+    private final Board _board;         // Geometry of the view
+    private final int symmetry;         // Maps the view onto the source
+
+    /**
+     * SymmetricVisitBoard views the source visits through a symmetry.
+     *
+     * @param source        The visits to view
+     * @param sourceBoard   Geometry of the source visits
+     * @param symmetry      Symmetry taking squares of the view to squares of
+     *                      the source; with SWAP, the view is the source
+     *                      board turned on its side
+     */
+    public SymmetricVisitBoard( VisitBoard source, Board sourceBoard,
+                                int symmetry ) {
+        if( (symmetry < 0) || (symmetry >= SYMMETRIES) )
+            throw new IllegalArgumentException("No such symmetry: " +
+                                                symmetry );
+
+        _source = source;
+        _board = ((symmetry & SWAP) == 0) ? sourceBoard :
+                sourceBoard.resize( sourceBoard.getHeight(),
+                                    sourceBoard.getWidth() );
+        this.symmetry = symmetry;
+    }
+
+    /**
+     * Map a square through a symmetry.
+     *
+     * @param board     Geometry of the board the square is on
+     * @param symmetry  The symmetry to apply
+     * @param square    The square index to map
+     * @return      The square index on the board the symmetry leads to
+     */
+    public static int transform( Board board, int symmetry, int square ) {
+        int x = board.getX( square );
+        int y = board.getY( square );
+
+        if( (symmetry & MIRROR_X) != 0 )
+            x = board.getWidth() - 1 - x;
+        if( (symmetry & MIRROR_Y) != 0 )
+            y = board.getHeight() - 1 - y;
+
+        // Swapped squares are numbered along the new, transposed rows
+        if( (symmetry & SWAP) != 0 )
+            return x * board.getHeight() + y;
+
+        return y * board.getWidth() + x;
+    }
+
+    /**
+     * Get the geometry of the view
+     *
+     * @return      The board seen through the symmetry
+     */
+    public Board getBoard() {
+        return _board;
+    }
+
+    @Override
+    public int getSquareCount() {
+        return _source.getSquareCount();
+    }
+
+    @Override
+    public int get( int square ) {
+        return _source.get( transform(_board, symmetry, square) );
+    }
+
+    @Override
+    public void set( int square, int move ) {
+        throw new UnsupportedOperationException("Symmetric views are " +
+                                                 "read-only");
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException("Symmetric views are " +
+                                                 "read-only");
+    }
+}
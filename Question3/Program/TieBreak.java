@@ -0,0 +1,35 @@
+/**
+ * Rules the Solver uses to choose between moves of equal weight.
+ *
+ * Every move is first weighed by the number of onward moves it leaves the
+ * Knight-piece (Warnsdorff's rule); these rules only decide which of the
+ * lightest moves is taken.
+ *
+ * @author Darren M.
+ */
+public enum TieBreak {
+    /**
+     * Take the first move encountered, in the Knight-piece's move order.
+     */
+    FIRST,
+
+    /**
+     * Take the move furthest away from the center of the board, leaving the
+     * roomier middle of the board for later.
+     */
+    CENTER,
+
+    /**
+     * Apply Warnsdorff's rule one move further ahead (after Pohl): take the
+     * move whose lightest onward move has the fewest moves itself, falling
+     * back to CENTER.
+     */
+    LOOKAHEAD,
+
+    /**
+     * Take one of the lightest moves at random, each as likely as the others;
+     * the choices follow from the Solver's seed, so a seed always gives the
+     * same tour.
+     */
+    RANDOM
+}
@@ -0,0 +1,346 @@
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Keeps recently solved tours so that repeated requests skip the Solver.
+ *
+ * Tours are looked up by board size, Leaper and starting square, up to the
+ * symmetries of the board: a tour starting in one corner, mirrored or turned,
+ * is a tour from each of the other corners too, for any Leaper. Every request
+ * is first carried onto its canonical form, the smallest (width, height, y, x)
+ * among its eight symmetric images, and only canonical tours are solved and
+ * stored. A hit hands back the stored tour through a SymmetricVisitBoard, so
+ * it costs a lookup and a coordinate transform per square read rather than a
+ * solve.
+ *
+ * The cache is bounded by the bytes its tours occupy; once it grows past the
+ * bound the least recently used tours are dropped. Hits, misses and evictions
+ * are counted as they happen. All methods may be called from any thread; the
+ * Solver runs outside the lock, so concurrent misses never wait on each other,
+ * unless they miss the same canonical tour: those are batched onto a single
+ * solve, which the later requests wait for and count as hits.
+ *
+ * @author Darren M.
+ */
+public class TourCache {
+    private static final int BYTES_PER_SQUARE = 4;  // Bytes of a visit
+
+    private final long maxBytes;        // Most bytes of tours to keep
+    private final TieBreak _tieBreak;   // How the Solver chooses between moves
+    private final long budget;          // Moves the Solver spends on a tour
+
+    // Canonical tours, from least to most recently used
+    private final LinkedHashMap<Key, Tour> _tours =
+            new LinkedHashMap<Key, Tour>( 16, 0.75f, true );
+    private long bytes;                 // Bytes of tours kept
+    private long hits;                  // Requests answered from the cache
+    private long misses;                // Requests that needed a solve
+    private long evictions;             // Tours dropped to stay in bounds
+
+    // Canonical tours being solved, for concurrent requests to wait on
+    private final Map<Key, CompletableFuture<Tour>> _solving =
+            new HashMap<Key, CompletableFuture<Tour>>();
+
+    /**
+     * TourCache keeps up to the given bytes of tours, solving missing ones
+     * with the given Solver settings.
+     *
+     * @param maxBytes  The most bytes of tours to keep
+     * @param tieBreak  The tie-breaking rule the Solver uses
+     * @param budget    The moves the Solver spends on a tour, or -1 for one
+     *                  pass without backtracking
+     */
+    public TourCache( long maxBytes, TieBreak tieBreak, long budget ) {
+        if( maxBytes < 0 )
+            throw new IllegalArgumentException("Cache size must not be " +
+                                                "negative: " + maxBytes );
+
+        this.maxBytes = maxBytes;
+        _tieBreak = tieBreak;
+        this.budget = budget;
+    }
+
+    /**
+     * Get the tour of a board from a starting position, solving it if neither
+     * it nor any of its symmetric images is cached.
+     *
+     * @param board         The board to tour
+     * @param startingX     X-coordinate of the Knight-piece's starting position
+     * @param startingY     Y-coordinate of the Knight-piece's starting position
+     * @return      The tour, seen from the requested board and start
+     */
+    public Tour getTour( Board board, int startingX, int startingY ) {
+        if(! board.contains(startingX, startingY) )
+            throw new IllegalArgumentException("Starting position (" +
+                                                startingX + "," + startingY +
+                                                ") is not on the " + board +
+                                                " board");
+
+        int symmetry = findCanonical( board, board.getSquare(startingX,
+                                                             startingY) );
+        Board canonical = ((symmetry & SymmetricVisitBoard.SWAP) == 0) ?
+                board : board.resize( board.getHeight(), board.getWidth() );
+        int start = SymmetricVisitBoard.transform( board, symmetry,
+                board.getSquare(startingX, startingY) );
+        Key key = new Key( canonical, start );
+
+        Tour tour;
+        CompletableFuture<Tour> solving;
+        boolean solver = false;         // Whether this request solves it
+        synchronized( this ) {
+            tour = _tours.get( key );
+            solving = _solving.get( key );
+            if( (tour != null) || (solving != null) )
+                hits++;
+            else {
+                misses++;
+                solver = true;
+                solving = new CompletableFuture<Tour>();
+                _solving.put( key, solving );
+            }
+        }
+
+        if( solver ) {
+            try {
+                tour = solve( canonical, start );
+                store( key, tour );
+            }
+            finally {
+                synchronized( this ) {
+                    _solving.remove( key );
+                }
+
+                // Never leave the waiting requests hanging
+                if( tour != null )
+                    solving.complete( tour );
+                else
+                    solving.completeExceptionally( new IllegalStateException(
+                            "The tour of the " + canonical + " board could " +
+                            "not be solved") );
+            }
+        }
+        else if( tour == null ) {
+            try {
+                tour = solving.join();
+            }
+            catch( CompletionException e ) {
+                throw (RuntimeException) e.getCause();
+            }
+        }
+
+        // The view runs from the requested board back onto the canonical one
+        if( symmetry == SymmetricVisitBoard.IDENTITY )
+            return tour;
+
+        SymmetricVisitBoard view = new SymmetricVisitBoard(
+                tour.getVisitBoard(), canonical, symmetry );
+        return new Tour( view.getBoard(), view, tour.isComplete() );
+    }
+
+    /**
+     * Find the symmetry carrying a starting square onto its canonical form.
+     *
+     * @param board     The board to tour
+     * @param start     The starting square
+     * @return      The symmetry giving the smallest (width, height, y, x)
+     */
+    private static int findCanonical( Board board, int start ) {
+        int best = SymmetricVisitBoard.IDENTITY;
+        long bestOrder = Long.MAX_VALUE;
+
+        for( int symmetry = 0; symmetry < SymmetricVisitBoard.SYMMETRIES;
+                symmetry++ ) {
+            boolean swapped = (symmetry & SymmetricVisitBoard.SWAP) != 0;
+            long width = swapped ? board.getHeight() : board.getWidth();
+
+            // Squares are numbered by row, so the index orders (y, x)
+            long order = (width << 32) | SymmetricVisitBoard.transform(
+                    board, symmetry, start );
+            if( order < bestOrder ) {
+                best = symmetry;
+                bestOrder = order;
+            }
+        }
+
+        return best;
+    }
+
+    /**
+     * Solve the tour of a canonical starting square.
+     *
+     * @param board     The canonical board
+     * @param start     The canonical starting square
+     * @return      The solved tour
+     */
+    private Tour solve( Board board, int start ) {
+        Solver solver = new Solver( board, board.getX(start),
+                                    board.getY(start) );
+        solver.setTieBreak( _tieBreak );
+
+        boolean complete = solver.solve(
+                (budget >= 0) ? budget : board.getSquareCount() );
+        return new Tour( board, solver.getVisitBoard(), complete );
+    }
+
+    /**
+     * Keep a solved tour, dropping the least recently used ones to make room.
+     *
+     * @param key       The canonical board and start of the tour
+     * @param tour      The solved tour
+     */
+    private synchronized void store( Key key, Tour tour ) {
+        long size = (long) BYTES_PER_SQUARE * tour.getBoard().getSquareCount();
+        if( size > maxBytes )
+            return;
+
+        // Another thread may have solved the same tour in the meantime
+        Tour previous = _tours.put( key, tour );
+        if( previous == null )
+            bytes += size;
+
+        Iterator<Map.Entry<Key, Tour>> eldest = _tours.entrySet().iterator();
+        while( bytes > maxBytes ) {
+            Tour evicted = eldest.next().getValue();
+
+            eldest.remove();
+            bytes -= (long) BYTES_PER_SQUARE *
+                    evicted.getBoard().getSquareCount();
+            evictions++;
+        }
+    }
+
+    /**
+     * Drop every cached tour; the counters are kept.
+     */
+    public synchronized void clear() {
+        _tours.clear();
+        bytes = 0;
+    }
+
+    /**
+     * Get the number of requests answered from the cache, or by waiting on
+     * another request's solve of the same tour
+     *
+     * @return      The number of hits
+     */
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    /**
+     * Get the number of requests that needed a solve
+     *
+     * @return      The number of misses
+     */
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * Get the number of tours dropped to stay within the size bound
+     *
+     * @return      The number of evictions
+     */
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    /**
+     * Get the number of tours kept
+     *
+     * @return      The number of cached tours
+     */
+    public synchronized int getTourCount() {
+        return _tours.size();
+    }
+
+    /**
+     * Get the bytes occupied by the kept tours
+     *
+     * @return      The size of the cached tours, in bytes
+     */
+    public synchronized long getSize() {
+        return bytes;
+    }
+
+    /**
+     * A tour handed out by the cache.
+     */
+    public static class Tour {
+        private final Board _board;         // Geometry of the toured board
+        private final VisitBoard _visit;    // The move number of each square
+        private final boolean complete;     // Whether every square was visited
+
+        /**
+         * A tour of the given board.
+         *
+         * @param board     Geometry of the toured board
+         * @param visits    The move number of each square
+         * @param complete  Whether the tour visits every square
+         */
+        public Tour( Board board, VisitBoard visits, boolean complete ) {
+            _board = board;
+            _visit = visits;
+            this.complete = complete;
+        }
+
+        /**
+         * Get the geometry of the toured board
+         *
+         * @return      The tour's board
+         */
+        public Board getBoard() {
+            return _board;
+        }
+
+        /**
+         * Obtain the move number of each square; cached tours are shared, so
+         * they must not be changed.
+         *
+         * @return      The visits of the tour
+         */
+        public VisitBoard getVisitBoard() {
+            return _visit;
+        }
+
+        /**
+         * Check if the tour visits every square
+         *
+         * @return      true, if the tour is complete; false otherwise
+         */
+        public boolean isComplete() {
+            return complete;
+        }
+    }
+
+    /**
+     * Canonical board size and starting square of a tour.
+     */
+    private static final class Key {
+        private final Board board;  // The canonical board and its Leaper
+        private final int start;    // Canonical starting square
+
+        Key( Board board, int start ) {
+            this.board = board;
+            this.start = start;
+        }
+
+        @Override
+        public boolean equals( Object other ) {
+            if(! (other instanceof Key) )
+                return false;
+
+            Key key = (Key) other;
+            return board.equals( key.board ) && (start == key.start);
+        }
+
+        @Override
+        public int hashCode() {
+            return board.hashCode() * 31 + start;
+        }
+    }
+}
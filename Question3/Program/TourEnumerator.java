@@ -0,0 +1,362 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Counts or lists every Knight's tour of a small board from a starting square.
+ *
+ * Where the Solver settles for the first tour its heuristic finds, the
+ * enumerator walks the whole tree of moves depth first. The board must fit
+ * in a long, as for the BitboardSolver: the visited squares are one bitboard
+ * and the moves come from the MoveTable's destination bitboards, so the
+ * Knight-piece's moves stay defined in one place.
+ *
+ * Branches that can't lead to a tour are cut as soon as they are entered:
+ *
+ *      dead-ends       An unvisited square with no unvisited neighbours can
+ *                      never be entered, and one with a single unvisited
+ *                      neighbour can only be the last square of the tour, so
+ *                      a branch dies once there are two such squares.
+ *      connectivity    The unvisited squares must all be reachable from the
+ *                      Knight-piece's square through one another; a flood fill
+ *                      over the bitboards finds any that were cut off.
+ *      closure         For closed tours, the last square must neighbour the
+ *                      starting square, so at least one of those neighbours
+ *                      has to stay unvisited until the end.
+ *
+ * The first few moves are split into separate tasks on a ForkJoinPool, one
+ * per branch, and each task then searches its subtree alone with an explicit
+ * stack of fixed arrays, allocating nothing per move.
+ *
+ * @author Darren M.
+ */
+public class TourEnumerator {
+    private static final int SPLIT_DEPTH = 6;   // Moves split between tasks
+
+    private final Board _board;     // Geometry of the chessboard
+    private final long[] _attacks;  // Destinations of each square
+
+    /**
+     * Receives the tours found by enumerate().
+     */
+    public interface Visitor {
+        /**
+         * Handle a tour; may be called from several threads at once.
+         *
+         * @param path      The square reached on each move, starting with
+         *                  the starting square; only valid during the call
+         * @return      true, to keep enumerating; false, to stop
+         */
+        boolean visit( int[] path );
+    }
+
+    /**
+     * TourEnumerator enumerates the tours of a small board.
+     *
+     * @param board     The board to tour, of at most 64 squares
+     */
+    public TourEnumerator( Board board ) {
+        if(! BitboardSolver.fits(board) )
+            throw new IllegalArgumentException("The " + board + " board has " +
+                                                "more than " +
+                                                MoveTable.MAX_BITBOARD_SQUARES +
+                                                " squares");
+
+        _board = board;
+        _attacks = board.getMoveTable().copyAttacks();
+    }
+
+    /**
+     * Count the tours from a starting position on the common ForkJoinPool.
+     *
+     * @param startingX     X-coordinate of the Knight-piece's starting position
+     * @param startingY     Y-coordinate of the Knight-piece's starting position
+     * @param closed        Whether to only count tours which end a move away
+     *                      from the starting position
+     * @return      The number of tours; each closed tour is counted once per
+     *              direction
+     */
+    public long count( int startingX, int startingY, boolean closed ) {
+        return count( startingX, startingY, closed,
+                      ForkJoinPool.commonPool() );
+    }
+
+    /**
+     * Count the tours from a starting position on the given ForkJoinPool.
+     *
+     * @param startingX     X-coordinate of the Knight-piece's starting position
+     * @param startingY     Y-coordinate of the Knight-piece's starting position
+     * @param closed        Whether to only count closed tours
+     * @param pool          The pool to search on
+     * @return      The number of tours
+     */
+    public long count( int startingX, int startingY, boolean closed,
+                       ForkJoinPool pool ) {
+        return search( startingX, startingY, closed, null, pool );
+    }
+
+    /**
+     * Hand every tour from a starting position to a visitor, searching on
+     * the common ForkJoinPool.
+     *
+     * @param startingX     X-coordinate of the Knight-piece's starting position
+     * @param startingY     Y-coordinate of the Knight-piece's starting position
+     * @param closed        Whether to only visit closed tours
+     * @param visitor       Receives the tours, and may stop the search
+     * @return      The number of tours visited
+     */
+    public long enumerate( int startingX, int startingY, boolean closed,
+                           Visitor visitor ) {
+        return enumerate( startingX, startingY, closed, visitor,
+                          ForkJoinPool.commonPool() );
+    }
+
+    /**
+     * Hand every tour from a starting position to a visitor, searching on
+     * the given ForkJoinPool.
+     *
+     * @param startingX     X-coordinate of the Knight-piece's starting position
+     * @param startingY     Y-coordinate of the Knight-piece's starting position
+     * @param closed        Whether to only visit closed tours
+     * @param visitor       Receives the tours, and may stop the search
+     * @param pool          The pool to search on
+     * @return      The number of tours visited
+     */
+    public long enumerate( int startingX, int startingY, boolean closed,
+                           Visitor visitor, ForkJoinPool pool ) {
+        return search( startingX, startingY, closed, visitor, pool );
+    }
+
+    /**
+     * Search the tours from a starting position.
+     *
+     * @param startingX     X-coordinate of the Knight-piece's starting position
+     * @param startingY     Y-coordinate of the Knight-piece's starting position
+     * @param closed        Whether to only accept closed tours
+     * @param visitor       Receives the tours, or null to only count them
+     * @param pool          The pool to search on
+     * @return      The number of tours found
+     */
+    private long search( int startingX, int startingY, boolean closed,
+                         Visitor visitor, ForkJoinPool pool ) {
+        if(! _board.contains(startingX, startingY) )
+            throw new IllegalArgumentException("Starting position (" +
+                                                startingX + "," + startingY +
+                                                ") is not on the " + _board +
+                                                " board");
+
+        Search search = new Search( _board.getSquare(startingX, startingY),
+                                    closed, visitor );
+        int[] prefix = { search.start };
+
+        return pool.invoke( new SearchTask(search, prefix) );
+    }
+
+    /**
+     * Check if a branch can still lead to a tour.
+     *
+     * @param search    The search being run
+     * @param current   The square the Knight-piece stands on
+     * @param visited   Bitboard of the visited squares, including current
+     * @return      true, if the unvisited squares may still be toured
+     */
+    private boolean isViable( Search search, int current, long visited ) {
+        long free = ~visited & search.squares;
+        if( free == 0 )
+            return true;
+
+        long next = _attacks[current] & free;
+        if( next == 0 )
+            return false;
+
+        // A closed tour must keep a way back to its start
+        long home = _attacks[search.start] & free;
+        if( search.closed && (home == 0) )
+            return false;
+
+        // Squares only one move from the rest must end the tour
+        int ends = 0;
+        for( long squares = free; squares != 0; squares &= squares - 1 ) {
+            int square = Long.numberOfTrailingZeros( squares );
+            int degree = Long.bitCount( _attacks[square] & free );
+
+            if( (next & (1L << square)) != 0 ) {
+                // Entered next, but nothing to go on to
+                if( (degree == 0) && (free != (1L << square)) )
+                    return false;
+            }
+            else if( degree == 0 )
+                return false;
+            else if( degree == 1 ) {
+                if( ++ends > 1 )
+                    return false;
+                if( search.closed && ((home & (1L << square)) == 0) )
+                    return false;
+            }
+        }
+
+        // Every unvisited square must be reachable from the next moves
+        long reached = next;
+        long frontier = next;
+        while( frontier != 0 ) {
+            long expanded = 0;
+            for( ; frontier != 0; frontier &= frontier - 1 )
+                expanded |= _attacks[Long.numberOfTrailingZeros(frontier)];
+
+            frontier = expanded & free & ~reached;
+            reached |= frontier;
+        }
+
+        return reached == free;
+    }
+
+    /**
+     * Search every tour continuing a prefix, one move at a time, on an
+     * explicit stack.
+     *
+     * @param search    The search being run
+     * @param prefix    The squares already reached, from the start
+     * @return      The number of tours found
+     */
+    private long searchFrom( Search search, int[] prefix ) {
+        int lastMove = _board.getSquareCount() - 1;
+        int base = prefix.length - 1;
+        int[] path = new int[lastMove + 1];
+        long[] remaining = new long[lastMove + 1];  // Untried moves per depth
+        long visited = 0;
+        long result = 0;
+
+        for( int move = 0; move <= base; move++ ) {
+            path[move] = prefix[move];
+            visited |= 1L << prefix[move];
+        }
+
+        // The prefix itself may already be a whole tour
+        if( base == lastMove )
+            return report( search, path ) ? 1 : 0;
+
+        int depth = base;
+        remaining[depth] = _attacks[path[depth]] & ~visited;
+
+        while( (depth >= base) && !search.stopped ) {
+            long moves = remaining[depth];
+
+            // Every move from here has been tried; step back
+            if( moves == 0 ) {
+                if( depth > base )
+                    visited &= ~(1L << path[depth]);
+                depth--;
+                continue;
+            }
+
+            int square = Long.numberOfTrailingZeros( moves );
+            remaining[depth] = moves & (moves - 1);
+
+            visited |= 1L << square;
+            path[depth + 1] = square;
+
+            if( depth + 1 == lastMove ) {
+                if( report(search, path) )
+                    result++;
+                visited &= ~(1L << square);
+            }
+            else if( isViable(search, square, visited) ) {
+                depth++;
+                remaining[depth] = _attacks[square] & ~visited;
+            }
+            else
+                visited &= ~(1L << square);
+        }
+
+        return result;
+    }
+
+    /**
+     * Hand a finished tour to the visitor, if it qualifies.
+     *
+     * @param search    The search being run
+     * @param path      The square reached on each move
+     * @return      true, if the tour was accepted
+     */
+    private boolean report( Search search, int[] path ) {
+        int last = path[path.length - 1];
+
+        if( search.closed &&
+                ((_attacks[last] & (1L << search.start)) == 0) )
+            return false;
+
+        if( (search.visitor != null) && !search.visitor.visit(path) )
+            search.stopped = true;
+
+        return true;
+    }
+
+    /**
+     * Settings and state shared by every task of a search.
+     */
+    private final class Search {
+        private final int start;            // The starting square
+        private final boolean closed;       // Whether tours must be closed
+        private final Visitor visitor;      // Receives the tours, if any
+        private final long squares;         // Bitboard of every square
+        private volatile boolean stopped;   // Set once the visitor is done
+
+        Search( int start, boolean closed, Visitor visitor ) {
+            this.start = start;
+            this.closed = closed;
+            this.visitor = visitor;
+
+            int count = _board.getSquareCount();
+            squares = (count == Long.SIZE) ? -1L : (1L << count) - 1;
+        }
+    }
+
+    /**
+     * Searches the subtree below a prefix, splitting the first moves between
+     * the pool's threads.
+     */
+    private class SearchTask extends RecursiveTask<Long> {
+        private static final long serialVersionUID = 1L;
+
+        private final Search search;    // The search being run
+        private final int[] prefix;     // The squares already reached
+
+        SearchTask( Search search, int[] prefix ) {
+            this.search = search;
+            this.prefix = prefix;
+        }
+
+        @Override
+        protected Long compute() {
+            int depth = prefix.length - 1;
+            if( (depth >= SPLIT_DEPTH) ||
+                    (depth + 1 >= _board.getSquareCount() - 1) )
+                return searchFrom( search, prefix );
+
+            long visited = 0;
+            for( int square : prefix )
+                visited |= 1L << square;
+
+            // One task per viable move
+            List<SearchTask> tasks = new ArrayList<SearchTask>();
+            for( long moves = _attacks[prefix[depth]] & ~visited; moves != 0;
+                    moves &= moves - 1 ) {
+                int square = Long.numberOfTrailingZeros( moves );
+
+                if( isViable(search, square, visited | (1L << square)) ) {
+                    int[] next = new int[prefix.length + 1];
+                    System.arraycopy( prefix, 0, next, 0, prefix.length );
+                    next[prefix.length] = square;
+                    tasks.add( new SearchTask(search, next) );
+                }
+            }
+
+            long result = 0;
+            for( SearchTask task : invokeAll(tasks) )
+                result += task.join();
+
+            return result;
+        }
+    }
+}
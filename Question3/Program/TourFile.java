@@ -0,0 +1,309 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A solved tour kept in a memory-mapped file.
+ *
+ * The file starts with a small header, followed by the move number of every
+ * square stored exactly as a DirectVisitBoard stores it (move number + 1, zero
+ * for unvisited squares, little-endian). Opening a tour maps the squares
+ * straight into a read-only DirectVisitBoard, so even a tour of several
+ * hundred megabytes is available at once, without being read or decoded; the
+ * operating system pages it in as it is used.
+ *
+ * The header holds eight little-endian ints:
+ *
+ *      0   magic number ("KNTF")
+ *      1   format version
+ *      2   board width
+ *      3   board height
+ *      4   starting x-coordinate
+ *      5   starting y-coordinate
+ *      6   flags (bit 0: the tour is complete)
+ *      7   Leaper, as (short leg << 16) | long leg; 0 for the Knight-piece
+ *
+ * @author Darren M.
+ */
+public class TourFile {
+    public static final int MAGIC = 0x4B4E5446;     // "KNTF"
+    public static final int VERSION = 1;            // Current format version
+    public static final int HEADER_SIZE = 32;       // Bytes before the squares
+    private static final int COMPLETE_FLAG = 1;     // Flag of complete tours
+
+    private final Board _board;         // Geometry of the toured board
+    private final VisitBoard _visit;    // The mapped move number of each square
+    private final int startingX;        // X-coordinate of the starting position
+    private final int startingY;        // Y-coordinate of the starting position
+    private final boolean complete;     // Whether every square was visited
+
+    /**
+     * A tour read back from a file; see open() and read().
+     */
+    private TourFile( Board board, VisitBoard visits, int startingX,
+                      int startingY, boolean complete ) {
+        _board = board;
+        _visit = visits;
+        this.startingX = startingX;
+        this.startingY = startingY;
+        this.complete = complete;
+    }
+
+    /**
+     * Write a tour to a file, replacing anything already there.
+     *
+     * @param file          The file to write
+     * @param board         Geometry of the toured board
+     * @param visits        The move number of each square
+     * @param startingX     X-coordinate of the tour's starting position
+     * @param startingY     Y-coordinate of the tour's starting position
+     * @param complete      Whether the tour visits every square
+     * @throws IOException  If the file couldn't be written
+     */
+    public static void write( File file, Board board, VisitBoard visits,
+                              int startingX, int startingY, boolean complete )
+            throws IOException {
+        FileChannel channel = FileChannel.open( file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING );
+
+        try {
+            ByteBuffer header = ByteBuffer.allocate( HEADER_SIZE )
+                                          .order( ByteOrder.LITTLE_ENDIAN );
+            header.putInt( MAGIC ).putInt( VERSION )
+                  .putInt( board.getWidth() ).putInt( board.getHeight() )
+                  .putInt( startingX ).putInt( startingY )
+                  .putInt( complete ? COMPLETE_FLAG : 0 )
+                  .putInt( encode(board.getLeaper()) );
+            header.flip();
+            while( header.hasRemaining() )
+                channel.write( header, header.position() );
+
+            DirectVisitBoard mapped = new DirectVisitBoard(
+                    map(channel, FileChannel.MapMode.READ_WRITE,
+                        board.getSquareCount()),
+                    board.getSquareCount() );
+            mapped.copyFrom( visits );
+        }
+        finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Open a tour written by write(), mapping its squares into memory.
+     *
+     * @param file      The file to open
+     * @return      The tour held by the file
+     * @throws IOException  If the file couldn't be read or holds no tour
+     */
+    public static TourFile open( File file ) throws IOException {
+        FileChannel channel = FileChannel.open( file.toPath(),
+                                                StandardOpenOption.READ );
+
+        try {
+            ByteBuffer header = ByteBuffer.allocate( HEADER_SIZE )
+                                          .order( ByteOrder.LITTLE_ENDIAN );
+            while( header.hasRemaining() ) {
+                if( channel.read(header, header.position()) < 0 )
+                    throw new IOException( file + " is not a tour file" );
+            }
+            header.flip();
+
+            TourFile tour = readHeader( header, channel.size(),
+                                        file.toString() );
+            VisitBoard visits = new DirectVisitBoard(
+                    map(channel, FileChannel.MapMode.READ_ONLY,
+                        tour._board.getSquareCount()),
+                    tour._board.getSquareCount() );
+
+            return new TourFile( tour._board, visits, tour.startingX,
+                                 tour.startingY, tour.complete );
+        }
+        finally {
+            // Mappings stay valid once the channel is closed
+            channel.close();
+        }
+    }
+
+    /**
+     * Read a tour written by write() from a stream, such as a resource
+     * packed into a jar, which can't be mapped.
+     *
+     * The whole stream is read into a single buffer on the heap, so this is
+     * meant for small tours; large ones are better opened from a file.
+     *
+     * @param in        The stream to read, which is left open
+     * @param source    Where the stream comes from, for error messages
+     * @return      The tour held by the stream
+     * @throws IOException  If the stream couldn't be read or holds no tour
+     */
+    public static TourFile read( InputStream in, String source )
+            throws IOException {
+        ByteBuffer contents = ByteBuffer.wrap( in.readAllBytes() )
+                                        .order( ByteOrder.LITTLE_ENDIAN );
+        if( contents.remaining() < HEADER_SIZE )
+            throw new IOException( source + " is not a tour file" );
+
+        TourFile tour = readHeader( contents.duplicate()
+                                            .order( ByteOrder.LITTLE_ENDIAN ),
+                                    contents.remaining(), source );
+        int squareCount = tour._board.getSquareCount();
+        ByteBuffer[] chunks =
+                new ByteBuffer[DirectVisitBoard.getChunkCount( squareCount )];
+
+        for( int i = 0; i < chunks.length; i++ ) {
+            int position = HEADER_SIZE + 4 * DirectVisitBoard.CHUNK_SQUARES * i;
+            int size = 4 * DirectVisitBoard.getChunkSquares( squareCount, i );
+
+            contents.limit( position + size ).position( position );
+            chunks[i] = contents.slice().order( ByteOrder.LITTLE_ENDIAN );
+        }
+
+        return new TourFile( tour._board,
+                             new DirectVisitBoard(chunks, squareCount),
+                             tour.startingX, tour.startingY, tour.complete );
+    }
+
+    /**
+     * Check and decode the header of a tour.
+     *
+     * @param header    The header's bytes, in little-endian order
+     * @param size      The size of the whole tour, header included
+     * @param source    Where the tour comes from, for error messages
+     * @return      The tour described by the header, without its squares
+     * @throws IOException  If the header is malformed, or the tour too short
+     *                      to hold every square
+     */
+    private static TourFile readHeader( ByteBuffer header, long size,
+                                        String source ) throws IOException {
+        if( header.getInt() != MAGIC )
+            throw new IOException( source + " is not a tour file" );
+        int version = header.getInt();
+        if( version != VERSION )
+            throw new IOException( source + " has unsupported version " +
+                                   version );
+
+        try {
+            int width = header.getInt();
+            int height = header.getInt();
+            int startingX = header.getInt();
+            int startingY = header.getInt();
+            boolean complete = (header.getInt() & COMPLETE_FLAG) != 0;
+            Board board = new Board( width, height,
+                                     decode(header.getInt()) );
+
+            if( size < HEADER_SIZE + 4L * board.getSquareCount() )
+                throw new IOException( source + " is truncated" );
+
+            return new TourFile( board, null, startingX, startingY,
+                                 complete );
+        }
+        catch( IllegalArgumentException e ) {
+            throw new IOException( source + " has a malformed header", e );
+        }
+    }
+
+    /**
+     * Encode a Leaper for the header
+     *
+     * @param leaper    The Leaper of the toured board
+     * @return      The header's Leaper field
+     */
+    private static int encode( Leaper leaper ) {
+        if( leaper.equals(Leaper.KNIGHT) )
+            return 0;
+
+        return (leaper.getShortLeg() << 16) | leaper.getLongLeg();
+    }
+
+    /**
+     * Decode the header's Leaper field
+     *
+     * @param field     The header's Leaper field
+     * @return      The Leaper of the toured board
+     */
+    private static Leaper decode( int field ) {
+        if( field == 0 )
+            return Leaper.KNIGHT;
+
+        return new Leaper( field >>> 16, field & 0xFFFF );
+    }
+
+    /**
+     * Map the squares of a tour file, one buffer per DirectVisitBoard chunk.
+     *
+     * @param channel       The open tour file
+     * @param mode          Whether to map for reading or writing
+     * @param squareCount   The number of squares on the board
+     * @return      The mapped chunks
+     * @throws IOException  If the file couldn't be mapped
+     */
+    private static ByteBuffer[] map( FileChannel channel,
+                                     FileChannel.MapMode mode,
+                                     int squareCount ) throws IOException {
+        ByteBuffer[] chunks =
+                new ByteBuffer[DirectVisitBoard.getChunkCount( squareCount )];
+
+        for( int i = 0; i < chunks.length; i++ ) {
+            long position = HEADER_SIZE +
+                    4L * DirectVisitBoard.CHUNK_SQUARES * i;
+            long size = 4L * DirectVisitBoard.getChunkSquares( squareCount, i );
+
+            chunks[i] = channel.map( mode, position, size )
+                               .order( ByteOrder.LITTLE_ENDIAN );
+        }
+
+        return chunks;
+    }
+
+    /**
+     * Get the geometry of the toured board
+     *
+     * @return      The tour's board
+     */
+    public Board getBoard() {
+        return _board;
+    }
+
+    /**
+     * Obtain the move number of each square, mapped straight from the file.
+     *
+     * @return      The read-only visits of the tour
+     */
+    public VisitBoard getVisitBoard() {
+        return _visit;
+    }
+
+    /**
+     * Get the x-coordinate the tour started from
+     *
+     * @return      The starting x-coordinate
+     */
+    public int getStartingX() {
+        return startingX;
+    }
+
+    /**
+     * Get the y-coordinate the tour started from
+     *
+     * @return      The starting y-coordinate
+     */
+    public int getStartingY() {
+        return startingY;
+    }
+
+    /**
+     * Check if the tour visits every square
+     *
+     * @return      true, if the tour is complete; false otherwise
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+}
@@ -0,0 +1,226 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Closed tours of common board sizes, solved at build time and shipped as
+ * resources.
+ *
+ * A closed tour ends a move away from where it started, so it is a cycle
+ * through every square and serves any starting square once renumbered from
+ * it. The library therefore keeps one closed Knight's tour per board size,
+ * for every board whose sides are between MIN_SIDE and MAX_SIDE squares and
+ * which has an even number of squares. Short-lived runs of the program copy
+ * the tour out of the library instead of solving it, and only the sizes
+ * asked for are ever read.
+ *
+ * The tours are generated by running this class:
+ *
+ *      java TourLibrary DIRECTORY
+ *
+ * which writes one TourFile per board size, named after it, under DIRECTORY;
+ * "make tours" and the Maven build both put them on the class path, in the
+ * "tours" directory. When the resources are missing the library is simply
+ * empty, and tours are solved as usual.
+ *
+ * @author Darren M.
+ */
+public class TourLibrary {
+    public static final int MIN_SIDE = 6;       // Smallest side of a board
+    public static final int MAX_SIDE = 16;      // Largest side of a board
+    public static final String DIRECTORY = "tours"; // Resource directory
+    private static final long BUDGET = 100;     // Moves per square to close
+                                                // a tour with
+
+    // Tours read so far, as the square reached on each move; the empty path
+    // marks sizes the library doesn't hold
+    private static final ConcurrentMap<Board, int[]> PATHS =
+            new ConcurrentHashMap<Board, int[]>();
+    private static final int[] NO_PATH = new int[0];
+
+    /**
+     * TourLibrary only holds static tours.
+     */
+    private TourLibrary() {
+    }
+
+    /**
+     * Check if the library may hold a tour of a board
+     *
+     * @param board     The board to check
+     * @return      true, if the board is one of the library's sizes
+     */
+    public static boolean covers( Board board ) {
+        return board.getLeaper().equals( Leaper.KNIGHT ) &&
+                (board.getWidth() >= MIN_SIDE) &&
+                (board.getWidth() <= MAX_SIDE) &&
+                (board.getHeight() >= MIN_SIDE) &&
+                (board.getHeight() <= MAX_SIDE) &&
+                (board.getSquareCount() % 2 == 0);
+    }
+
+    /**
+     * Get the name of the resource holding a board's tour
+     *
+     * @param board     The board
+     * @return      The resource's name, relative to the class path
+     */
+    public static String getResourceName( Board board ) {
+        return DIRECTORY + "/" + board.getWidth() + "x" + board.getHeight() +
+                ".tour";
+    }
+
+    /**
+     * Copy the library's closed tour of a board, numbered from a starting
+     * square.
+     *
+     * @param board         The board to tour
+     * @param visits        Storage for the visits, with one entry per
+     *                      square of the board
+     * @param startingX     X-coordinate of the Knight-piece's starting position
+     * @param startingY     Y-coordinate of the Knight-piece's starting position
+     * @return      true, if the tour was copied; false if the library holds
+     *              none for the board
+     */
+    public static boolean copyTour( Board board, VisitBoard visits,
+                                    int startingX, int startingY ) {
+        if(! board.contains(startingX, startingY) )
+            throw new IllegalArgumentException("Starting position (" +
+                                                startingX + "," + startingY +
+                                                ") is not on the " + board +
+                                                " board");
+
+        int[] path = getPath( board );
+        if( path == NO_PATH )
+            return false;
+
+        // Walk the cycle round from the starting square
+        int start = board.getSquare( startingX, startingY );
+        int offset = 0;
+        while( path[offset] != start )
+            offset++;
+
+        for( int move = 0; move < path.length; move++ )
+            visits.set( path[(move + offset) % path.length], move );
+
+        return true;
+    }
+
+    /**
+     * Get the library's tour of a board, reading it on first use.
+     *
+     * @param board     The board
+     * @return      The square reached on each move, or NO_PATH
+     */
+    private static int[] getPath( Board board ) {
+        if(! covers(board) )
+            return NO_PATH;
+
+        int[] path = PATHS.get( board );
+        if( path == null ) {
+            path = readPath( board );
+            int[] existing = PATHS.putIfAbsent( board, path );
+            if( existing != null )
+                path = existing;
+        }
+
+        return path;
+    }
+
+    /**
+     * Read a board's tour from the library's resources.
+     *
+     * @param board     The board
+     * @return      The square reached on each move, or NO_PATH if the
+     *              resource is missing or holds no whole tour
+     */
+    private static int[] readPath( Board board ) {
+        String name = getResourceName( board );
+        InputStream in = TourLibrary.class.getResourceAsStream( "/" + name );
+        if( in == null )
+            return NO_PATH;
+
+        try {
+            TourFile tour = TourFile.read( in, name );
+            if(! tour.getBoard().equals(board) )
+                return NO_PATH;
+
+            // The tours were verified when generated; only make sure each
+            // square is numbered once, so the index is safe to walk
+            VisitBoard visits = tour.getVisitBoard();
+            int[] path = new int[visits.getSquareCount()];
+            boolean[] numbered = new boolean[path.length];
+            for( int square = 0; square < path.length; square++ ) {
+                int move = visits.get( square );
+                if( (move < 0) || (move >= path.length) || numbered[move] )
+                    return NO_PATH;
+
+                numbered[move] = true;
+                path[move] = square;
+            }
+
+            return path;
+        }
+        catch( IOException e ) {
+            return NO_PATH;
+        }
+        finally {
+            try {
+                in.close();
+            }
+            catch( IOException e ) {
+                // Nothing was written; the tour is read either way
+            }
+        }
+    }
+
+    /**
+     * Solve and write every tour of the library.
+     *
+     * @param args      The directory to write the tours into
+     */
+    public static void main( String[] args ) {
+        if( args.length != 1 ) {
+            System.err.println("usage:        java TourLibrary DIRECTORY");
+            System.exit( 1 );
+        }
+
+        File directory = new File( args[0] );
+        if(! directory.isDirectory() && !directory.mkdirs() ) {
+            System.err.println("Could not create " + directory );
+            System.exit( 1 );
+        }
+
+        for( int width = MIN_SIDE; width <= MAX_SIDE; width++ ) {
+            for( int height = MIN_SIDE; height <= MAX_SIDE; height++ ) {
+                Board board = new Board( width, height );
+                if(! covers(board) )
+                    continue;
+
+                Solver solver = new Solver( board, 0, 0 );
+                TourVerifier verifier = new TourVerifier( board,
+                        solver.getVisitBoard() );
+                if( !solver.solveClosed(BUDGET * board.getSquareCount()) ||
+                        !verifier.verify() || !verifier.isClosed() ) {
+                    System.err.println("Could not close a tour of the " +
+                                        board + " board");
+                    System.exit( 1 );
+                }
+
+                File file = new File( directory, board.getWidth() + "x" +
+                                      board.getHeight() + ".tour" );
+                try {
+                    TourFile.write( file, board, solver.getVisitBoard(), 0, 0,
+                                    true );
+                }
+                catch( IOException e ) {
+                    System.err.println("Could not write " + file + ": " +
+                                        e.getMessage() );
+                    System.exit( 1 );
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,363 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Solves tours over HTTP, for programs that want tours without a console.
+ *
+ * The server only listens on the loopback address, and answers two requests:
+ *
+ *      GET /tour?size=WxH&x=X&y=Y&mode=open|closed&leaper=NAME&format=F
+ *              Streams the tour of a board from the (0-indexed) starting
+ *              square, in one of the TourWriter formats ("binary", the
+ *              default, "moves" or "board"); the X-Tour-Complete header
+ *              tells whether every square was visited. Only "size" is
+ *              required; the tour starts in the top-left corner, is open,
+ *              and is toured by the Knight-piece by default.
+ *      GET /stats
+ *              The cache's hits, misses, evictions and size, one per line.
+ *
+ * Requests run on a fixed pool of threads, and every one of them shares the
+ * same MoveTables and TourCache: open tours are solved once per canonical
+ * board and start, and concurrent requests for the same tour are batched onto
+ * a single solve. Closed tours come from the TourLibrary where it holds one,
+ * and are otherwise solved for each request. Boards are limited to
+ * MAX_SQUARES squares, so a single request can't hold up the others for long.
+ *
+ * @author Darren M.
+ */
+public class TourServer {
+    public static final int DEFAULT_PORT = 8080;    // Port without arguments
+    public static final int MAX_SQUARES = 1 << 20;  // Largest board served
+    private static final int THREADS_PER_CORE = 2;  // Request threads per core
+    private static final int BACKLOG = 1024;        // Connections kept waiting
+    private static final long CACHE_BYTES = 64L << 20;  // Bytes of open tours
+    private static final long BUDGET = 10000000;    // Moves spent on a tour
+    private static final int CLOSED_BUDGET = 100;   // Moves per square spent
+                                                    // on a closed tour
+
+    private final HttpServer _server;   // Accepts and parses the requests
+    private final ExecutorService _pool;    // Runs the requests
+    private final TourCache _cache;     // Open tours, shared by all requests
+
+    /**
+     * TourServer listens on the given port of the loopback address; it
+     * doesn't answer until it is started.
+     *
+     * @param port      The port to listen on, or 0 for any free port
+     * @throws IOException  If the port can't be bound
+     */
+    public TourServer( int port ) throws IOException {
+        _server = HttpServer.create( new InetSocketAddress(
+                InetAddress.getLoopbackAddress(), port), BACKLOG );
+        _pool = Executors.newFixedThreadPool( THREADS_PER_CORE *
+                Runtime.getRuntime().availableProcessors() );
+        _cache = new TourCache( CACHE_BYTES, TieBreak.CENTER, BUDGET );
+
+        _server.setExecutor( _pool );
+        _server.createContext( "/tour", new HttpHandler() {
+            @Override
+            public void handle( HttpExchange exchange ) throws IOException {
+                serveTour( exchange );
+            }
+        } );
+        _server.createContext( "/stats", new HttpHandler() {
+            @Override
+            public void handle( HttpExchange exchange ) throws IOException {
+                serveStats( exchange );
+            }
+        } );
+    }
+
+    /**
+     * Start answering requests.
+     */
+    public void start() {
+        _server.start();
+    }
+
+    /**
+     * Stop answering requests, letting the ones in progress finish.
+     */
+    public void stop() {
+        _server.stop( 0 );
+        _pool.shutdown();
+    }
+
+    /**
+     * Get the port the server listens on
+     *
+     * @return      The bound port
+     */
+    public int getPort() {
+        return _server.getAddress().getPort();
+    }
+
+    /**
+     * Get the cache of open tours
+     *
+     * @return      The cache shared by all requests
+     */
+    public TourCache getCache() {
+        return _cache;
+    }
+
+    /**
+     * Answer a request for a tour.
+     *
+     * @param exchange  The request and its response
+     * @throws IOException  If the response can't be sent
+     */
+    private void serveTour( HttpExchange exchange ) throws IOException {
+        try {
+            if(! exchange.getRequestMethod().equals("GET") ) {
+                sendText( exchange, 405, "Only GET is supported\n" );
+                return;
+            }
+
+            Map<String, String> query =
+                    parseQuery( exchange.getRequestURI().getRawQuery() );
+            Board board = parseBoard( query );
+            int startingX = parseInt( query, "x", 0 );
+            int startingY = parseInt( query, "y", 0 );
+            String mode = getOrDefault( query, "mode", "open" );
+            TourWriter.Format format;
+
+            try {
+                format = TourWriter.Format.valueOf(
+                        getOrDefault(query, "format", "binary").toUpperCase() );
+            }
+            catch( IllegalArgumentException e ) {
+                throw new IllegalArgumentException("Unknown format: " +
+                                                    query.get("format") );
+            }
+
+            if(! board.contains(startingX, startingY) )
+                throw new IllegalArgumentException("Starting position (" +
+                                                    startingX + "," +
+                                                    startingY + ") is not " +
+                                                    "on the " + board +
+                                                    " board");
+
+            TourCache.Tour tour;
+            if( mode.equals("open") )
+                tour = _cache.getTour( board, startingX, startingY );
+            else if( mode.equals("closed") )
+                tour = solveClosed( board, startingX, startingY );
+            else
+                throw new IllegalArgumentException("Unknown mode: " + mode );
+
+            // Stream the tour as it is written out
+            exchange.getResponseHeaders().set( "Content-Type",
+                    (format == TourWriter.Format.BINARY) ?
+                            "application/octet-stream" : "text/plain" );
+            exchange.getResponseHeaders().set( "X-Tour-Complete",
+                    String.valueOf(tour.isComplete()) );
+            exchange.sendResponseHeaders( 200, 0 );
+
+            TourWriter writer = new TourWriter( exchange.getResponseBody() );
+            try {
+                writer.writeTour( tour.getBoard(), tour.getVisitBoard(),
+                                  format );
+            }
+            finally {
+                writer.close();
+            }
+        }
+        catch( IllegalArgumentException e ) {
+            sendText( exchange, 400, e.getMessage() + "\n" );
+        }
+        finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Find a closed tour, from the TourLibrary if it holds one.
+     *
+     * @param board         The board to tour
+     * @param startingX     X-coordinate of the Knight-piece's starting position
+     * @param startingY     Y-coordinate of the Knight-piece's starting position
+     * @return      The closed tour, or the best attempt at one
+     */
+    private static TourCache.Tour solveClosed( Board board, int startingX,
+                                               int startingY ) {
+        VisitBoard visits = new ArrayVisitBoard( board.getSquareCount() );
+        if( TourLibrary.copyTour(board, visits, startingX, startingY) )
+            return new TourCache.Tour( board, visits, true );
+
+        Solver solver = new Solver( board, visits, startingX, startingY );
+        boolean complete = solver.solveClosed(
+                (long) CLOSED_BUDGET * board.getSquareCount() );
+        return new TourCache.Tour( board, visits, complete );
+    }
+
+    /**
+     * Answer a request for the cache's statistics.
+     *
+     * @param exchange  The request and its response
+     * @throws IOException  If the response can't be sent
+     */
+    private void serveStats( HttpExchange exchange ) throws IOException {
+        try {
+            sendText( exchange, 200, "hits " + _cache.getHitCount() + "\n" +
+                    "misses " + _cache.getMissCount() + "\n" +
+                    "evictions " + _cache.getEvictionCount() + "\n" +
+                    "tours " + _cache.getTourCount() + "\n" +
+                    "bytes " + _cache.getSize() + "\n" );
+        }
+        finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Send a whole plain text response.
+     *
+     * @param exchange  The request and its response
+     * @param status    The HTTP status code
+     * @param text      The body of the response
+     * @throws IOException  If the response can't be sent
+     */
+    private static void sendText( HttpExchange exchange, int status,
+                                  String text ) throws IOException {
+        byte[] body = text.getBytes( StandardCharsets.UTF_8 );
+
+        exchange.getResponseHeaders().set( "Content-Type", "text/plain" );
+        exchange.sendResponseHeaders( status, body.length );
+
+        OutputStream out = exchange.getResponseBody();
+        out.write( body );
+        out.close();
+    }
+
+    /**
+     * Split a query string into its parameters; the values the server reads
+     * never need decoding.
+     *
+     * @param query     The raw query string, or null
+     * @return      The value of each parameter
+     */
+    private static Map<String, String> parseQuery( String query ) {
+        Map<String, String> parameters = new HashMap<String, String>();
+        if( query == null )
+            return parameters;
+
+        for( String parameter : query.split("&") ) {
+            int separator = parameter.indexOf( '=' );
+            if( separator > 0 )
+                parameters.put( parameter.substring(0, separator),
+                                parameter.substring(separator + 1) );
+        }
+
+        return parameters;
+    }
+
+    /**
+     * Get a parameter, falling back to a default when it is missing
+     *
+     * @param query         The request's parameters
+     * @param name          The parameter's name
+     * @param fallback      The value of a missing parameter
+     * @return      The parameter's value
+     */
+    private static String getOrDefault( Map<String, String> query,
+                                        String name, String fallback ) {
+        String value = query.get( name );
+        return (value == null) ? fallback : value;
+    }
+
+    /**
+     * Parse an integer parameter.
+     *
+     * @param query         The request's parameters
+     * @param name          The parameter's name
+     * @param fallback      The value of a missing parameter
+     * @return      The parameter's value
+     */
+    private static int parseInt( Map<String, String> query, String name,
+                                 int fallback ) {
+        String value = query.get( name );
+        if( value == null )
+            return fallback;
+
+        try {
+            return Integer.parseInt( value );
+        }
+        catch( NumberFormatException e ) {
+            throw new IllegalArgumentException("Malformed " + name + ": " +
+                                                value );
+        }
+    }
+
+    /**
+     * Parse the board size (e.g., "10x12") and Leaper of a request.
+     *
+     * @param query     The request's parameters
+     * @return      The board to tour
+     */
+    private static Board parseBoard( Map<String, String> query ) {
+        String size = query.get( "size" );
+        if( size == null )
+            throw new IllegalArgumentException("Missing size");
+
+        int separator = size.indexOf( 'x' );
+        Board board;
+        try {
+            board = new Board(
+                    Integer.parseInt(size.substring(0, separator)),
+                    Integer.parseInt(size.substring(separator + 1)),
+                    Leaper.forName(getOrDefault(query, "leaper", "knight")) );
+        }
+        catch( IndexOutOfBoundsException e ) {
+            throw new IllegalArgumentException("Malformed size: " + size );
+        }
+        catch( NumberFormatException e ) {
+            throw new IllegalArgumentException("Malformed size: " + size );
+        }
+
+        if( board.getSquareCount() > MAX_SQUARES )
+            throw new IllegalArgumentException("The " + board + " board has " +
+                                                "more than " + MAX_SQUARES +
+                                                " squares");
+
+        return board;
+    }
+
+    /**
+     * Serve tours until the program is killed.
+     *
+     * @param args      The port to listen on, if not DEFAULT_PORT
+     */
+    public static void main( String[] args ) {
+        int port = DEFAULT_PORT;
+
+        try {
+            if( args.length > 0 )
+                port = Integer.parseInt( args[0] );
+
+            TourServer server = new TourServer( port );
+            server.start();
+            System.out.println("Serving tours on http://localhost:" +
+                                server.getPort() + "/tour");
+        }
+        catch( NumberFormatException e ) {
+            System.err.println("usage:        java TourServer [PORT]");
+            System.exit( 1 );
+        }
+        catch( IOException e ) {
+            System.err.println("Could not listen on port " + port + ": " +
+                                e.getMessage() );
+            System.exit( 1 );
+        }
+    }
+}
@@ -0,0 +1,199 @@
+import java.util.function.IntBinaryOperator;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.IntStream;
+
+/**
+ * Checks that a board of visits holds a valid tour.
+ *
+ * A tour is valid when every square is visited exactly once, numbered from 0
+ * up to the last move, and each move lands a Leaper's jump away from the one
+ * before it. Checking that takes two passes over the board, each split into
+ * chunks that a parallel stream spreads over every core:
+ *
+ *      index       Every square records itself as the square of its move
+ *                  number, building the inverse index (move number to
+ *                  square) in a single pass; move numbers out of range are
+ *                  caught on the way.
+ *      adjacency   Every move number looks its square up in the index, and
+ *                  checks that the square really carries that number, which
+ *                  fails for any move number held by no square or by more
+ *                  than one, and that it is a jump away from the previous
+ *                  move's square.
+ *
+ * Neither pass needs any locking: each index entry is written by the squares
+ * carrying its move number, and a valid tour has exactly one of those. The
+ * index takes 4 bytes a square, so a 100,000,000 square tour is verified
+ * with 400 megabytes beside the tour itself.
+ *
+ * @author Darren M.
+ */
+public class TourVerifier {
+    public static final int CHUNK_SQUARES = 1 << 16;    // Squares per chunk
+    private static final int NONE = Integer.MAX_VALUE;  // No problem found
+
+    // Keeps the lowest of the problems found by the chunks
+    private static final IntBinaryOperator MINIMUM = new IntBinaryOperator() {
+        public int applyAsInt( int first, int second ) {
+            return Math.min( first, second );
+        }
+    };
+
+    private final Board _board;         // Geometry of the toured board
+    private final VisitBoard _visit;    // The move number of each square
+    private final MoveTable _table;     // Moves of the board's Leaper
+    private String problem;             // The first problem found, if any
+    private boolean closed;             // Whether the valid tour is closed
+
+    /**
+     * TourVerifier checks the visits of a board.
+     *
+     * @param board     Geometry of the toured board
+     * @param visits    The move number of each square, as kept by a Solver
+     */
+    public TourVerifier( Board board, VisitBoard visits ) {
+        if( visits.getSquareCount() != board.getSquareCount() )
+            throw new IllegalArgumentException("Visit storage holds " +
+                                                visits.getSquareCount() +
+                                                " squares; the " + board +
+                                                " board needs " +
+                                                board.getSquareCount() );
+
+        _board = board;
+        _visit = visits;
+        _table = board.getMoveTable();
+    }
+
+    /**
+     * Check the tour, on the common ForkJoinPool.
+     *
+     * @return      true, if the visits form a complete, valid tour
+     */
+    public boolean verify() {
+        final int squareCount = _board.getSquareCount();
+        final int[] path = new int[squareCount];
+        int chunks = (squareCount + CHUNK_SQUARES - 1) / CHUNK_SQUARES;
+
+        problem = null;
+        closed = false;
+
+        int badSquare = IntStream.range( 0, chunks ).parallel()
+                .map( new IntUnaryOperator() {
+                    public int applyAsInt( int chunk ) {
+                        return indexChunk( chunk, path );
+                    }
+                }).reduce( NONE, MINIMUM );
+
+        if( badSquare != NONE ) {
+            int move = _visit.get( badSquare );
+
+            if( move == Constants.EMPTY_SLOT )
+                problem = "square " + describe( badSquare ) + " was not " +
+                        "visited";
+            else
+                problem = "square " + describe( badSquare ) + " has move " +
+                        "number " + move + ", outside of the tour";
+            return false;
+        }
+
+        int badMove = IntStream.range( 0, chunks ).parallel()
+                .map( new IntUnaryOperator() {
+                    public int applyAsInt( int chunk ) {
+                        return checkChunk( chunk, path );
+                    }
+                }).reduce( NONE, MINIMUM );
+
+        if( badMove != NONE ) {
+            if( _visit.get(path[badMove]) != badMove )
+                problem = "move " + badMove + " is missing, or shared by " +
+                        "several squares";
+            else
+                problem = "move " + badMove + " to " +
+                        describe( path[badMove] ) + " is not a move away " +
+                        "from " + describe( path[badMove - 1] );
+            return false;
+        }
+
+        closed = (squareCount > 1) &&
+                _table.isMove( path[squareCount - 1], path[0] );
+        return true;
+    }
+
+    /**
+     * Enter a chunk of squares into the inverse index.
+     *
+     * @param chunk     Index of the chunk of squares
+     * @param path      The inverse index, from move number to square
+     * @return      The first square with a move number out of range, or NONE
+     */
+    private int indexChunk( int chunk, int[] path ) {
+        int first = chunk * CHUNK_SQUARES;
+        int end = (int) Math.min( (long) first + CHUNK_SQUARES, path.length );
+
+        for( int square = first; square < end; square++ ) {
+            int move = _visit.get( square );
+
+            if( (move < 0) || (move >= path.length) )
+                return square;
+
+            path[move] = square;
+        }
+
+        return NONE;
+    }
+
+    /**
+     * Check a chunk of moves against the inverse index.
+     *
+     * A move number which no square carries keeps its zero entry in the
+     * index, and square 0 carries a different move number; one carried by
+     * several squares leaves some other move number with none.
+     *
+     * @param chunk     Index of the chunk of moves
+     * @param path      The inverse index, from move number to square
+     * @return      The first move which is missing or out of reach of the
+     *              move before it, or NONE
+     */
+    private int checkChunk( int chunk, int[] path ) {
+        int first = chunk * CHUNK_SQUARES;
+        int end = (int) Math.min( (long) first + CHUNK_SQUARES, path.length );
+
+        for( int move = first; move < end; move++ ) {
+            int square = path[move];
+
+            if( _visit.get(square) != move )
+                return move;
+            if( (move > 0) && !_table.isMove(path[move - 1], square) )
+                return move;
+        }
+
+        return NONE;
+    }
+
+    /**
+     * Describe a square by its coordinates
+     *
+     * @param square    The square's index
+     * @return      The square's coordinates
+     */
+    private String describe( int square ) {
+        return "(" + _board.getX(square) + "," + _board.getY(square) + ")";
+    }
+
+    /**
+     * Check if the last verified tour ends a move away from its start
+     *
+     * @return      true, if verify() succeeded and the tour is closed
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Describe why the last verify() failed
+     *
+     * @return      The first problem found, or null if the tour is valid
+     */
+    public String getProblem() {
+        return problem;
+    }
+}
@@ -0,0 +1,290 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes a finished tour out in bulk, for runs without a console.
+ *
+ * Everything goes through one buffer which is handed to the underlying stream
+ * in large blocks; numbers are formatted straight into the buffer, so writing
+ * a tour allocates nothing per move. The supported formats are:
+ *
+ *      MOVES   One "x,y" line per square, in the order they were visited.
+ *      BOARD   One line per row of the board, as Play prints it: the move
+ *              number of each square separated by spaces, or -1 for squares
+ *              that were never visited.
+ *      BINARY  A header of seven big-endian ints (the magic number "KNT2",
+ *              width, height, the leaper's short and long legs, starting
+ *              square and number of moves), then one byte per move holding
+ *              the index of the move within the leaper's MoveTable.
+ *
+ * The move order is recovered by walking the tour from its starting square to
+ * the neighbour visited one move later, so no extra per-square memory is
+ * needed even on the largest boards.
+ *
+ * @author Darren M.
+ */
+public class TourWriter implements Closeable {
+    public static final int MAGIC = 0x4B4E5432;     // "KNT2"
+    private static final int BUFFER_SIZE = 1 << 16; // Bytes per write
+
+    /**
+     * The layouts a tour can be written in.
+     */
+    public enum Format { MOVES, BOARD, BINARY }
+
+    private final OutputStream _out;    // Where the tour is written to
+    private final byte[] _buffer;       // Output waiting to be written
+    private int position;               // Bytes used in the buffer
+
+    /**
+     * TourWriter writes tours to the given stream.
+     *
+     * @param out       The stream to write to; it needs no buffering of its own
+     */
+    public TourWriter( OutputStream out ) {
+        _out = out;
+        _buffer = new byte[BUFFER_SIZE];
+        position = 0;
+    }
+
+    /**
+     * Write a tour in the given format.
+     *
+     * @param board     Geometry of the toured board
+     * @param visits    The move number of each square
+     * @param format    The layout to write the tour in
+     * @throws IOException  If the underlying stream fails
+     */
+    public void writeTour( Board board, VisitBoard visits, Format format )
+            throws IOException {
+        long start = SolverMetrics.ENABLED ? System.nanoTime() : 0;
+
+        try {
+            write( board, visits, format );
+        }
+        finally {
+            if( SolverMetrics.ENABLED )
+                SolverMetrics.endPhase( SolverMetrics.Phase.WRITE, start );
+        }
+    }
+
+    /**
+     * Write a tour, as writeTour() does.
+     *
+     * @param board     Geometry of the toured board
+     * @param visits    The move number of each square
+     * @param format    The layout to write the tour in
+     * @throws IOException  If the underlying stream fails
+     */
+    private void write( Board board, VisitBoard visits, Format format )
+            throws IOException {
+        if( format == Format.BOARD ) {
+            writeBoard( board, visits );
+            return;
+        }
+
+        MoveTable table = board.getMoveTable();
+        int current = findStart( visits );
+
+        if( format == Format.BINARY ) {
+            writeInt( MAGIC );
+            writeInt( board.getWidth() );
+            writeInt( board.getHeight() );
+            writeInt( board.getLeaper().getShortLeg() );
+            writeInt( board.getLeaper().getLongLeg() );
+            writeInt( current );
+            writeInt( countMoves(table, visits, current) );
+        }
+        else if( current >= 0 )
+            writeSquare( board, current );
+
+        // Follow the tour from square to square
+        for( int move = 1; current >= 0; move++ ) {
+            int index = findMove( table, visits, current, move );
+            if( index < 0 )
+                break;
+
+            current += table.getDelta( index );
+            if( format == Format.BINARY )
+                writeByte( index );
+            else
+                writeSquare( board, current );
+        }
+    }
+
+    /**
+     * Find the square the tour started on
+     *
+     * @param visits    The move number of each square
+     * @return      The starting square, or -1 if nothing was visited
+     */
+    private static int findStart( VisitBoard visits ) {
+        for( int square = 0; square < visits.getSquareCount(); square++ ) {
+            if( visits.get(square) == 0 )
+                return square;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Find the move the tour made from a square.
+     *
+     * @param table     Moves of the toured board
+     * @param visits    The move number of each square
+     * @param current   The square the move was made from
+     * @param move      The number of the move
+     * @return      Index of the move within the MoveTable, or -1 if the tour
+     *              ended on the square
+     */
+    private static int findMove( MoveTable table, VisitBoard visits,
+                                 int current, int move ) {
+        for( int mask = table.getMoveMask(current); mask != 0;
+                mask &= mask - 1 ) {
+            int index = Integer.numberOfTrailingZeros( mask );
+
+            if( visits.get(current + table.getDelta(index)) == move )
+                return index;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Count the moves of the tour by following it from its starting square.
+     *
+     * @param table     Moves of the toured board
+     * @param visits    The move number of each square
+     * @param start     The square the tour started on
+     * @return      The number of moves made
+     */
+    private static int countMoves( MoveTable table, VisitBoard visits,
+                                   int start ) {
+        int moves = 0;
+
+        for( int current = start; current >= 0; ) {
+            int index = findMove( table, visits, current, moves + 1 );
+            if( index < 0 )
+                break;
+
+            current += table.getDelta( index );
+            moves++;
+        }
+
+        return moves;
+    }
+
+    /**
+     * Write the move number of every square, one row of the board per line.
+     *
+     * @param board     Geometry of the toured board
+     * @param visits    The move number of each square
+     * @throws IOException  If the underlying stream fails
+     */
+    private void writeBoard( Board board, VisitBoard visits )
+            throws IOException {
+        for( int i = 0; i < board.getWidth(); i++ ) {
+            for( int j = 0; j < board.getHeight(); j++ ) {
+                if( j > 0 )
+                    writeByte( ' ' );
+                writeNumber( visits.get(board.getSquare(i, j)) );
+            }
+
+            writeByte( '\n' );
+        }
+    }
+
+    /**
+     * Write a square as an "x,y" line
+     *
+     * @param board     Geometry of the toured board
+     * @param square    The square to write
+     * @throws IOException  If the underlying stream fails
+     */
+    private void writeSquare( Board board, int square ) throws IOException {
+        writeNumber( board.getX(square) );
+        writeByte( ',' );
+        writeNumber( board.getY(square) );
+        writeByte( '\n' );
+    }
+
+    /**
+     * Write a number in decimal
+     *
+     * @param number    The number to write
+     * @throws IOException  If the underlying stream fails
+     */
+    private void writeNumber( int number ) throws IOException {
+        if( number < 0 ) {
+            writeByte( '-' );
+            number = -number;
+        }
+
+        // Digits come out lowest first, so count them before writing
+        int digits = 1;
+        for( int rest = number / 10; rest > 0; rest /= 10 )
+            digits++;
+
+        if( position + digits > _buffer.length )
+            flushBuffer();
+
+        for( int i = position + digits - 1; i >= position; i-- ) {
+            _buffer[i] = (byte) ('0' + number % 10);
+            number /= 10;
+        }
+        position += digits;
+    }
+
+    /**
+     * Write a number as four big-endian bytes
+     *
+     * @param number    The number to write
+     * @throws IOException  If the underlying stream fails
+     */
+    private void writeInt( int number ) throws IOException {
+        writeByte( number >>> 24 );
+        writeByte( number >>> 16 );
+        writeByte( number >>> 8 );
+        writeByte( number );
+    }
+
+    /**
+     * Write a single byte
+     *
+     * @param value     The byte to write, in the low 8 bits
+     * @throws IOException  If the underlying stream fails
+     */
+    private void writeByte( int value ) throws IOException {
+        if( position == _buffer.length )
+            flushBuffer();
+
+        _buffer[position++] = (byte) value;
+    }
+
+    /**
+     * Hand the buffered output to the underlying stream
+     *
+     * @throws IOException  If the underlying stream fails
+     */
+    private void flushBuffer() throws IOException {
+        _out.write( _buffer, 0, position );
+        position = 0;
+    }
+
+    /**
+     * Write out anything still buffered and flush the underlying stream.
+     *
+     * @throws IOException  If the underlying stream fails
+     */
+    public void flush() throws IOException {
+        flushBuffer();
+        _out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        _out.close();
+    }
+}
@@ -0,0 +1,40 @@
+/**
+ * Storage for the move number on which each square of a board was visited.
+ *
+ * Squares are addressed by their square index (y * width + x), so every
+ * implementation is a single flat run of memory rather than an array of rows.
+ * Unvisited squares read back as Constants.EMPTY_SLOT.
+ *
+ * @author Darren M.
+ */
+public interface VisitBoard {
+    /**
+     * Get the number of squares held by the board
+     *
+     * @return      The number of squares
+     */
+    int getSquareCount();
+
+    /**
+     * Obtain the move number on which a square was visited
+     *
+     * @param square    The square index to look up
+     * @return      The move number, or Constants.EMPTY_SLOT if the square
+     *              hasn't been visited
+     */
+    int get( int square );
+
+    /**
+     * Record the move number on which a square was visited.
+     *
+     * @param square    The square index to mark
+     * @param move      The move number, or Constants.EMPTY_SLOT to mark the
+     *                  square as unvisited again
+     */
+    void set( int square, int move );
+
+    /**
+     * Mark every square as unvisited again, so the storage can be reused.
+     */
+    void clear();
+}
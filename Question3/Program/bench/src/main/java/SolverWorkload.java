@@ -0,0 +1,78 @@
+import java.util.List;
+
+/**
+ * The benchmarks' view of the Knight-piece classes; see bench.Workload.
+ *
+ * Two Solvers are kept: one frozen half way through its tour, whose board the
+ * move generators and filter run against, and one the tour benchmark drives
+ * from start to finish.
+ *
+ * @author Darren M.
+ */
+public class SolverWorkload implements bench.Workload {
+    private Board _board;           // Geometry of the chessboard
+    private Knight _knight;         // Generates the List-based moves
+    private MoveTable _table;       // Generates the table-based moves
+    private Solver _halfway;        // Solver half way through its tour
+    private Solver _tour;           // Solver driven by the tour benchmark
+    private int[] _destinations;    // Scratch space for the table moves
+    private int startingX;          // X-coordinate of the starting position
+    private int startingY;          // Y-coordinate of the starting position
+    private int square;             // Square the next query is made from
+
+    @Override
+    public void setUp( int width, int height, String leaper, int startingX,
+                       int startingY ) {
+        _board = new Board( width, height, Leaper.forName(leaper) );
+        _knight = new Knight( _board, startingX, startingY );
+        _table = _board.getMoveTable();
+        _destinations = new int[MoveTable.MAX_MOVES];
+        this.startingX = startingX;
+        this.startingY = startingY;
+
+        _halfway = new Solver( _board, startingX, startingY );
+        for( int i = 0; i < _board.getSquareCount() / 2; i++ )
+            _halfway.nextSquare();
+
+        _tour = new Solver( _board, startingX, startingY );
+    }
+
+    /**
+     * Step to the square the next query is made from
+     *
+     * @return      The square's index
+     */
+    private int nextQuerySquare() {
+        square = (square + 1 == _board.getSquareCount()) ? 0 : square + 1;
+        return square;
+    }
+
+    @Override
+    public int generateKnightMoves() {
+        int query = nextQuerySquare();
+        List<Position> moves = _knight.getMovesFromPosition(
+                _board.getX(query), _board.getY(query) );
+
+        return moves.size();
+    }
+
+    @Override
+    public int generateTableMoves() {
+        return _table.getDestinations( nextQuerySquare(), _destinations );
+    }
+
+    @Override
+    public int filterForNonVisits() {
+        return _halfway.filterForNonVisits( nextQuerySquare() );
+    }
+
+    @Override
+    public void resetTour() {
+        _tour.reset( startingX, startingY );
+    }
+
+    @Override
+    public int nextMove() {
+        return _tour.nextSquare();
+    }
+}
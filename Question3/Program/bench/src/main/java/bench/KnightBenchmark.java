@@ -0,0 +1,111 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the Knight-piece's move generation and the Solver's throughput.
+ *
+ * Every benchmark runs over several board sizes, from a corner and from the
+ * center of the board, for the Knight-piece and for the zebra, a (2,3)-leaper
+ * whose moves the same MoveTable-driven code runs through. Run them with the
+ * GC profiler to also see the allocation rate:
+ *
+ *      java -jar bench/target/benchmarks.jar -prof gc
+ *
+ * The move generators and the filter report operations per second; their
+ * average time (-bm avgt) is the cost of a single query. The tour benchmark
+ * additionally counts the moves it makes, so its "moves" result is moves per
+ * second, and its average time divided by the board's squares is the cost
+ * of a single move.
+ *
+ * @author Darren M.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KnightBenchmark {
+    @Param({ "8x8", "64x64", "1000x1000" })
+    public String size;
+
+    @Param({ "corner", "center" })
+    public String start;
+
+    @Param({ "knight", "zebra" })
+    public String leaper;
+
+    private Workload workload;
+
+    /**
+     * Counts the moves made by the tour benchmark.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Moves {
+        public long moves;
+
+        @Setup(Level.Iteration)
+        public void clear() {
+            moves = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws ReflectiveOperationException {
+        int separator = size.indexOf('x');
+        int width = Integer.parseInt( size.substring(0, separator) );
+        int height = Integer.parseInt( size.substring(separator + 1) );
+
+        workload = (Workload) Class.forName("SolverWorkload")
+                                   .getDeclaredConstructor().newInstance();
+        if( start.equals("corner") )
+            workload.setUp( width, height, leaper, 0, 0 );
+        else
+            workload.setUp( width, height, leaper, width / 2, height / 2 );
+    }
+
+    @Benchmark
+    public int knightGetMovesFromPosition() {
+        return workload.generateKnightMoves();
+    }
+
+    @Benchmark
+    public int moveTableDestinations() {
+        return workload.generateTableMoves();
+    }
+
+    @Benchmark
+    public int solverFilterForNonVisits() {
+        return workload.filterForNonVisits();
+    }
+
+    @Benchmark
+    public int solverTour( Moves counter ) {
+        int last = 0;
+
+        workload.resetTour();
+        for( int square = workload.nextMove(); square >= 0;
+                square = workload.nextMove() ) {
+            last = square;
+            counter.moves++;
+        }
+
+        return last;
+    }
+}
@@ -0,0 +1,60 @@
+package bench;
+
+/**
+ * The operations the benchmarks measure.
+ *
+ * JMH refuses benchmarks in the default package, while the Knight-piece
+ * classes live there and so can't be imported from any other package. The
+ * benchmarks therefore drive them through this interface, which is
+ * implemented by SolverWorkload in the default package and looked up once
+ * per trial; the measured calls are plain interface calls.
+ *
+ * @author Darren M.
+ */
+public interface Workload {
+    /**
+     * Prepare a board of the given size, half toured from the given start.
+     *
+     * @param width         Width of the board
+     * @param height        Height of the board
+     * @param leaper        Name of the piece touring the board
+     * @param startingX     X-coordinate of the Knight-piece's starting position
+     * @param startingY     Y-coordinate of the Knight-piece's starting position
+     */
+    void setUp( int width, int height, String leaper, int startingX,
+                int startingY );
+
+    /**
+     * Generate the moves from the next square with
+     * Knight.getMovesFromPosition().
+     *
+     * @return      The number of moves generated
+     */
+    int generateKnightMoves();
+
+    /**
+     * Generate the moves from the next square with the MoveTable.
+     *
+     * @return      The number of moves generated
+     */
+    int generateTableMoves();
+
+    /**
+     * Filter the moves from the next square with Solver.filterForNonVisits().
+     *
+     * @return      The bitmask of unvisited destinations
+     */
+    int filterForNonVisits();
+
+    /**
+     * Put the tour's Solver back on its starting square.
+     */
+    void resetTour();
+
+    /**
+     * Make the tour's next move with Solver.nextSquare().
+     *
+     * @return      The square moved to, or -1 once the tour is over
+     */
+    int nextMove();
+}